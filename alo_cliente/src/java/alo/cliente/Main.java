@@ -1,6 +1,8 @@
 package alo.cliente;
 
 import alo.Alo;
+import alo.proxy.ProxyRemoto;
+import java.util.Arrays;
 import javax.ejb.EJB;
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -23,6 +25,18 @@ public class Main {
         Context context = new InitialContext();
         aloBean = (Alo) context.lookup("java:global/alo_ejb/AloMundoBean!alo.Alo");
         System.out.println(aloBean.getMensagem("Teste"));
+
+        /*
+         * Com o ProxyRemoto, mensagens já montadas vêm do cache e os nomes
+         * novos de um lote vão ao servidor em uma só chamada.
+         */
+        Alo alo = ProxyRemoto.criar(Alo.class, aloBean, 1000);
+        System.out.println(alo.getMensagem("Teste"));
+        System.out.println(alo.getMensagem("Teste"));
+        System.out.println(alo.getMensagens(Arrays.asList("Ana", "Teste", "Pedro")));
+        ProxyRemoto estatisticas = ProxyRemoto.de(alo);
+        System.out.println(String.format("%d chamadas, %d remotas",
+                estatisticas.getChamadas(), estatisticas.getChamadasRemotas()));
     }
     
 }
\ No newline at end of file
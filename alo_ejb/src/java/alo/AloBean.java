@@ -1,5 +1,7 @@
 package alo;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.ejb.Stateless;
 
 /**
@@ -13,4 +15,13 @@ public class AloBean implements Alo {
     public String getMensagem(String nome) {
         return String.format("Alô %s, bem vindo ao EJB 3!", nome);
     }
+
+    @Override
+    public List<String> getMensagens(List<String> nomes) {
+        List<String> mensagens = new ArrayList<>(nomes.size());
+        for (String nome : nomes) {
+            mensagens.add(getMensagem(nome));
+        }
+        return mensagens;
+    }
 }
\ No newline at end of file
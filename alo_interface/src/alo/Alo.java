@@ -5,6 +5,9 @@
  */
 package alo;
 
+import alo.proxy.EmLote;
+import alo.proxy.Pura;
+import java.util.List;
 import javax.ejb.Remote;
 
 /**
@@ -13,5 +16,15 @@ import javax.ejb.Remote;
  */
 @Remote
 public interface Alo {
+    @Pura
     public String getMensagem(String nome);
+
+    /**
+     * Monta as mensagens de vários nomes em uma única chamada remota.
+     *
+     * @return uma mensagem por nome, na mesma ordem.
+     */
+    @Pura
+    @EmLote("getMensagem")
+    public List<String> getMensagens(List<String> nomes);
 }
@@ -0,0 +1,20 @@
+package alo.proxy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca a versão em lote de um método @Pura. O método anotado recebe uma
+ * List de argumentos e devolve uma List de resultados na mesma ordem; value()
+ * é o nome do método unitário correspondente. O ProxyRemoto responde pelo
+ * cache o que já conhece e envia o restante em uma única chamada remota.
+ *
+ * @author MASC
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface EmLote {
+    String value();
+}
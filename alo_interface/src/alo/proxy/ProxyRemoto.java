@@ -0,0 +1,245 @@
+package alo.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proxy do lado do cliente para beans remotos stateless.
+ *
+ * - Métodos @Pura têm o resultado guardado em um cache LRU de tamanho
+ *   limitado. Chamadas concorrentes com os mesmos argumentos esperam pela
+ *   mesma chamada remota em vez de cada uma fazer a sua.
+ * - Métodos @EmLote consultam o cache do método unitário para cada item e
+ *   enviam apenas os que faltam, em uma única chamada remota.
+ * - Os demais métodos são repassados diretamente ao bean.
+ *
+ * Exemplo:
+ * <pre>
+ * Alo alo = ProxyRemoto.criar(Alo.class, (Alo) context.lookup(...), 1000);
+ * </pre>
+ *
+ * @author MASC
+ */
+public class ProxyRemoto implements InvocationHandler {
+    private final Object alvo;
+    private final Map<Chave, Object> cache;
+    private final ConcurrentMap<Chave, FutureTask<Object>> emAndamento = new ConcurrentHashMap<>();
+    private final AtomicLong chamadas = new AtomicLong();
+    private final AtomicLong chamadasRemotas = new AtomicLong();
+
+    private ProxyRemoto(Object alvo, final int capacidade) {
+        this.alvo = alvo;
+        this.cache = new LinkedHashMap<Chave, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Chave, Object> maisAntiga) {
+                return size() > capacidade;
+            }
+        };
+    }
+
+    /**
+     * Cria o proxy para o bean remoto.
+     *
+     * @param capacidade número máximo de resultados guardados no cache.
+     */
+    public static <T> T criar(Class<T> interfaceRemota, T alvo, int capacidade) {
+        Object proxy = Proxy.newProxyInstance(interfaceRemota.getClassLoader(),
+                new Class<?>[]{interfaceRemota}, new ProxyRemoto(alvo, capacidade));
+        return interfaceRemota.cast(proxy);
+    }
+
+    /**
+     * Devolve o ProxyRemoto de um proxy criado por criar(), para consulta das
+     * estatísticas.
+     */
+    public static ProxyRemoto de(Object proxy) {
+        return (ProxyRemoto) Proxy.getInvocationHandler(proxy);
+    }
+
+    /**
+     * @return número de chamadas recebidas pelo proxy (um lote conta como
+     * uma chamada por item).
+     */
+    public long getChamadas() {
+        return chamadas.get();
+    }
+
+    /**
+     * @return número de chamadas efetivamente enviadas ao servidor.
+     */
+    public long getChamadasRemotas() {
+        return chamadasRemotas.get();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+        if (metodo.getDeclaringClass() == Object.class) {
+            return invocarObject(proxy, metodo, args);
+        }
+        if (metodo.isAnnotationPresent(EmLote.class)) {
+            return invocarEmLote(metodo, (List<?>) args[0]);
+        }
+        chamadas.incrementAndGet();
+        if (metodo.isAnnotationPresent(Pura.class)) {
+            return invocarPura(metodo, args);
+        }
+        return invocarRemoto(metodo, args);
+    }
+
+    private Object invocarPura(final Method metodo, final Object[] args) throws Throwable {
+        Chave chave = new Chave(metodo, args);
+        synchronized (cache) {
+            if (cache.containsKey(chave)) {
+                return cache.get(chave);
+            }
+        }
+
+        FutureTask<Object> tarefa = new FutureTask<>(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                try {
+                    return invocarRemoto(metodo, args);
+                } catch (Exception | Error ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    throw new ExecutionException(ex);
+                }
+            }
+        });
+        FutureTask<Object> existente = emAndamento.putIfAbsent(chave, tarefa);
+        if (existente == null) {
+            try {
+                tarefa.run();
+                Object resultado = tarefa.get();
+                synchronized (cache) {
+                    cache.put(chave, resultado);
+                }
+                return resultado;
+            } catch (ExecutionException ex) {
+                throw ex.getCause();
+            } finally {
+                emAndamento.remove(chave, tarefa);
+            }
+        }
+
+        try {
+            return existente.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private Object invocarEmLote(Method metodo, List<?> argumentos) throws Throwable {
+        chamadas.addAndGet(argumentos.size());
+        Method unitario = localizarUnitario(metodo);
+        Object[] resultados = new Object[argumentos.size()];
+        boolean[] encontrados = new boolean[argumentos.size()];
+        LinkedHashSet<Object> faltantes = new LinkedHashSet<>();
+        synchronized (cache) {
+            for (int i = 0; i < argumentos.size(); i++) {
+                Chave chave = new Chave(unitario, new Object[]{argumentos.get(i)});
+                if (cache.containsKey(chave)) {
+                    resultados[i] = cache.get(chave);
+                    encontrados[i] = true;
+                } else {
+                    faltantes.add(argumentos.get(i));
+                }
+            }
+        }
+
+        if (!faltantes.isEmpty()) {
+            List<Object> enviados = new ArrayList<>(faltantes);
+            List<?> recebidos = (List<?>) invocarRemoto(metodo, new Object[]{enviados});
+            Map<Object, Object> porArgumento = new LinkedHashMap<>();
+            synchronized (cache) {
+                for (int i = 0; i < enviados.size(); i++) {
+                    porArgumento.put(enviados.get(i), recebidos.get(i));
+                    cache.put(new Chave(unitario, new Object[]{enviados.get(i)}), recebidos.get(i));
+                }
+            }
+            for (int i = 0; i < argumentos.size(); i++) {
+                if (!encontrados[i]) {
+                    resultados[i] = porArgumento.get(argumentos.get(i));
+                }
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(resultados));
+    }
+
+    private Object invocarObject(Object proxy, Method metodo, Object[] args) {
+        switch (metodo.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "ProxyRemoto[" + alvo + "]";
+        }
+    }
+
+    private Method localizarUnitario(Method metodo) {
+        String nome = metodo.getAnnotation(EmLote.class).value();
+        for (Method candidato : metodo.getDeclaringClass().getMethods()) {
+            if (candidato.getName().equals(nome) && candidato.getParameterTypes().length == 1) {
+                return candidato;
+            }
+        }
+        throw new IllegalStateException("Método unitário não encontrado: " + nome);
+    }
+
+    private Object invocarRemoto(Method metodo, Object[] args) throws Throwable {
+        chamadasRemotas.incrementAndGet();
+        try {
+            return metodo.invoke(alvo, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static final class Chave {
+        private final Method metodo;
+        private final Object[] args;
+        private final int hash;
+
+        Chave(Method metodo, Object[] args) {
+            this.metodo = metodo;
+            this.args = args == null ? new Object[0] : args.clone();
+            this.hash = 31 * metodo.hashCode() + Arrays.hashCode(this.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Chave)) {
+                return false;
+            }
+            Chave outra = (Chave) obj;
+            return hash == outra.hash && Objects.equals(metodo, outra.metodo) && Arrays.equals(args, outra.args);
+        }
+    }
+}
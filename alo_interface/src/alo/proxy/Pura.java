@@ -0,0 +1,19 @@
+package alo.proxy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca um método remoto cujo resultado depende apenas dos argumentos. O
+ * ProxyRemoto guarda o resultado em cache e agrupa chamadas concorrentes
+ * iguais em uma só chamada remota.
+ *
+ * @author MASC
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Pura {
+
+}
@@ -0,0 +1,198 @@
+package alo.proxy;
+
+import alo.Alo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes do ProxyRemoto sobre uma implementação local de Alo, que conta as
+ * chamadas recebidas e simula o tempo de ida e volta ao servidor.
+ *
+ * @author MASC
+ */
+public class ProxyRemotoTest {
+
+    @Test
+    public void metodoPuroEhMemoizado() {
+        AloSimulado servidor = new AloSimulado(0);
+        Alo alo = ProxyRemoto.criar(Alo.class, servidor, 100);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(servidor.mensagem("nome" + i % 10), alo.getMensagem("nome" + i % 10));
+        }
+
+        assertEquals(10, servidor.chamadas.get());
+        assertEquals(100, ProxyRemoto.de(alo).getChamadas());
+        assertEquals(10, ProxyRemoto.de(alo).getChamadasRemotas());
+    }
+
+    @Test
+    public void cacheDescartaOMenosUsado() {
+        AloSimulado servidor = new AloSimulado(0);
+        Alo alo = ProxyRemoto.criar(Alo.class, servidor, 2);
+
+        alo.getMensagem("a");
+        alo.getMensagem("b");
+        alo.getMensagem("a");
+        alo.getMensagem("c"); //Descarta "b", o menos usado recentemente.
+        alo.getMensagem("a");
+        assertEquals(3, servidor.chamadas.get());
+
+        alo.getMensagem("b");
+        assertEquals(4, servidor.chamadas.get());
+    }
+
+    /*
+     * Várias threads pedem a mesma mensagem enquanto a primeira chamada
+     * remota ainda está em andamento: todas recebem o resultado dela.
+     */
+    @Test
+    public void chamadasConcorrentesIguaisSaoAgrupadas() throws Exception {
+        final AloSimulado servidor = new AloSimulado(200);
+        final Alo alo = ProxyRemoto.criar(Alo.class, servidor, 100);
+        final CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> respostas = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                respostas.add(threads.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        largada.await();
+                        return alo.getMensagem("Masc");
+                    }
+                }));
+            }
+            largada.countDown();
+            for (Future<String> resposta : respostas) {
+                assertEquals(servidor.mensagem("Masc"), resposta.get());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(1, servidor.chamadas.get());
+        assertEquals(16, ProxyRemoto.de(alo).getChamadas());
+    }
+
+    @Test
+    public void loteEnviaApenasOsQueFaltam() {
+        AloSimulado servidor = new AloSimulado(0);
+        Alo alo = ProxyRemoto.criar(Alo.class, servidor, 100);
+        alo.getMensagem("a");
+
+        List<String> mensagens = alo.getMensagens(Arrays.asList("a", "b", "c", "b"));
+
+        assertEquals(Arrays.asList(servidor.mensagem("a"), servidor.mensagem("b"),
+                servidor.mensagem("c"), servidor.mensagem("b")), mensagens);
+        assertEquals(Arrays.asList("b", "c"), servidor.ultimoLote);
+        assertEquals(2, servidor.chamadas.get());
+
+        //O lote também alimenta o cache do método unitário.
+        alo.getMensagem("c");
+        assertEquals(2, servidor.chamadas.get());
+    }
+
+    @Test
+    public void excecaoNaoEhGuardadaNoCache() {
+        AloSimulado servidor = new AloSimulado(0);
+        Alo alo = ProxyRemoto.criar(Alo.class, servidor, 100);
+        servidor.falhar = true;
+        try {
+            alo.getMensagem("a");
+            fail("A exceção do servidor deveria ser propagada");
+        } catch (IllegalStateException ex) {
+            assertEquals("Servidor indisponível", ex.getMessage());
+        }
+
+        servidor.falhar = false;
+        assertEquals(servidor.mensagem("a"), alo.getMensagem("a"));
+        assertEquals(2, servidor.chamadas.get());
+    }
+
+    /*
+     * 1000 mensagens para 50 nomes distintos, pedidas em lotes de 100, como
+     * faria um cliente que monta uma página de saudações.
+     */
+    @Test
+    public void idasAoServidorEconomizadas() {
+        List<String> nomes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            nomes.add("nome" + i * 7 % 50);
+        }
+
+        AloSimulado direto = new AloSimulado(0);
+        for (String nome : nomes) {
+            direto.getMensagem(nome);
+        }
+
+        AloSimulado servidor = new AloSimulado(0);
+        Alo alo = ProxyRemoto.criar(Alo.class, servidor, 100);
+        for (int i = 0; i < nomes.size(); i += 100) {
+            alo.getMensagens(nomes.subList(i, i + 100));
+        }
+
+        System.out.printf("1000 mensagens, 50 nomes: %d idas ao servidor sem o proxy, %d com o proxy%n",
+                direto.chamadas.get(), servidor.chamadas.get());
+        assertEquals(1000, direto.chamadas.get());
+        assertEquals(1, servidor.chamadas.get());
+    }
+
+    /*
+     * Implementação local de Alo, com a mesma mensagem do AloBean.
+     */
+    private static class AloSimulado implements Alo {
+        private final long latencia;
+        private final AtomicInteger chamadas = new AtomicInteger();
+        private volatile List<String> ultimoLote;
+        private volatile boolean falhar;
+
+        AloSimulado(long latencia) {
+            this.latencia = latencia;
+        }
+
+        String mensagem(String nome) {
+            return String.format("Alô %s, bem vindo ao EJB 3!", nome);
+        }
+
+        @Override
+        public String getMensagem(String nome) {
+            idaAoServidor();
+            return mensagem(nome);
+        }
+
+        @Override
+        public List<String> getMensagens(List<String> nomes) {
+            idaAoServidor();
+            ultimoLote = new ArrayList<>(nomes);
+            List<String> mensagens = new ArrayList<>(nomes.size());
+            for (String nome : nomes) {
+                mensagens.add(mensagem(nome));
+            }
+            return mensagens;
+        }
+
+        private void idaAoServidor() {
+            chamadas.incrementAndGet();
+            if (falhar) {
+                throw new IllegalStateException("Servidor indisponível");
+            }
+            if (latencia > 0) {
+                try {
+                    Thread.sleep(latencia);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
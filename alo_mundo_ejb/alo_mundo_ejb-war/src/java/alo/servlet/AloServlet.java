@@ -2,22 +2,48 @@ package alo.servlet;
 
 import alo.ejb.Alo;
 import java.io.IOException;
-import java.io.PrintWriter;
+import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import modelo.Modelo;
+import modelo.servlet.ProcessamentoAssincrono;
 
 /**
  *
  * @author MASC
  */
-@WebServlet(name = "alo", urlPatterns = {"/alo"})
+@WebServlet(name = "alo", urlPatterns = {"/alo"}, asyncSupported = true)
 public class AloServlet extends HttpServlet {
     @EJB
     private Alo aloBean;
+    private static final Modelo PAGINA = Modelo.compilar("<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "<head>\n"
+            + "<title>Servlet AloServlet</title>\n"
+            + "</head>\n"
+            + "<body>\n"
+            + "<h1> ${mensagem}</h1>\n"
+            + "</body>\n"
+            + "</html>\n");
+
+    /*
+     * Executor gerenciado pelo container (java:comp/DefaultManagedExecutorService).
+     * Suas threads propagam o contexto de nomes da aplicação, então os beans
+     * injetados podem ser usados normalmente dentro das tarefas.
+     */
+    @Resource
+    private ManagedExecutorService executor;
+    private ProcessamentoAssincrono processamento;
+
+    @Override
+    public void init() throws ServletException {
+        processamento = new ProcessamentoAssincrono(executor, getServletConfig());
+    }
 
     /**
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
@@ -32,17 +58,7 @@ public class AloServlet extends HttpServlet {
             throws ServletException, IOException {
         String nome = request.getParameter("nome");
         response.setContentType("text/html;charset=UTF-8");
-        try (PrintWriter out = response.getWriter()) {
-            out.println("<!DOCTYPE html>");
-            out.println("<html>");
-            out.println("<head>");
-            out.println("<title>Servlet AloServlet</title>");            
-            out.println("</head>");
-            out.println("<body>");
-            out.println("<h1> " + aloBean.getMensagem(nome) + "</h1>");
-            out.println("</body>");
-            out.println("</html>");
-        }
+        PAGINA.escrever(response.getOutputStream(), aloBean.getMensagem(nome));
     }
 
     // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
@@ -57,7 +73,7 @@ public class AloServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        processamento.processar(request, response, this::processRequest);
     }
 
     /**
@@ -71,7 +87,7 @@ public class AloServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        processamento.processar(request, response, this::processRequest);
     }
 
     /**
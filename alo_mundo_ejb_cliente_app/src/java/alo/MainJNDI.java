@@ -5,14 +5,11 @@
  */
 package alo;
 
-import java.io.IOException;
-import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.EJB;
-import javax.naming.Context;
-import javax.naming.InitialContext;
 import javax.naming.NamingException;
+import localizador.LocalizadorRemoto;
 
 /**
  *
@@ -27,12 +24,10 @@ public class MainJNDI {
      */
     public static void main(String[] args) {
         try {
-            Properties properties = new Properties();
-            properties.load(MainJNDI.class.getResourceAsStream("jndi.properties"));
-            Context context = new InitialContext(properties);
-            aloBean = (Alo) context.lookup("java:global/alo_mundo_ejb_remoto/AloMundoBean!alo.ejb.Alo");
+            aloBean = LocalizadorRemoto.para(MainJNDI.class, "jndi.properties")
+                    .localizar("java:global/alo_mundo_ejb_remoto/AloMundoBean!alo.ejb.Alo", Alo.class);
             System.out.println(aloBean.getMensagem("Teste"));
-        } catch (NamingException | IOException ex) {
+        } catch (NamingException ex) {
             Logger.getGlobal().log(Level.SEVERE, ex.getMessage(), ex);
         }
     }
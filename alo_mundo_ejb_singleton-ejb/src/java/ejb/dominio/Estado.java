@@ -1,12 +1,18 @@
 package ejb.dominio;
 
 import java.io.Serializable;
+import java.util.Date;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import referencia.ItemReferencia;
 
 /**
  *
@@ -14,7 +20,7 @@ import javax.persistence.Table;
  */
 @Entity
 @Table(name = "TB_ESTADO")
-public class Estado implements Serializable {
+public class Estado implements Serializable, ItemReferencia {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;    
@@ -22,6 +28,12 @@ public class Estado implements Serializable {
     private String sigla;
     @Column(name = "TXT_NOME", length = 50, nullable = false)
     private String nome;
+    /*
+     * Usada no marcador de alteração do cache de estados (veja EstadosBean).
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "DT_ATUALIZACAO")
+    private Date atualizacao;
 
     public Long getId() {
         return id;
@@ -31,6 +43,14 @@ public class Estado implements Serializable {
         this.id = id;
     }
 
+    /**
+     * A sigla é o código do estado na tabela de referência.
+     */
+    @Override
+    public String getCodigo() {
+        return sigla;
+    }
+
     public String getSigla() {
         return sigla;
     }
@@ -39,6 +59,7 @@ public class Estado implements Serializable {
         this.sigla = sigla;
     }
 
+    @Override
     public String getNome() {
         return nome;
     }
@@ -47,6 +68,16 @@ public class Estado implements Serializable {
         this.nome = nome;
     }
 
+    public Date getAtualizacao() {
+        return atualizacao;
+    }
+
+    @PrePersist
+    @PreUpdate
+    private void registrarAtualizacao() {
+        atualizacao = new Date();
+    }
+
     @Override
     public int hashCode() {
         int hash = 0;
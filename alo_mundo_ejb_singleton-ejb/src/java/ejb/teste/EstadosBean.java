@@ -1,11 +1,13 @@
 package ejb.teste;
 
 import ejb.dominio.Estado;
-import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Properties;
-import java.util.Set;
+import java.util.Map;
 import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
 import javax.ejb.Singleton;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
@@ -13,52 +15,90 @@ import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
-import javax.persistence.TypedQuery;
+import referencia.CacheReferencia;
+import referencia.FonteJpa;
+import referencia.FontePropriedades;
+import referencia.Mapeador;
 
 /**
+ * Os estados ficam em um CacheReferencia, o mesmo cache usado pelo EstadoBean
+ * de ex_ejb_singleton: um snapshot imutável lido sem bloqueio, com índices por
+ * código e por prefixo do nome, recarregado quando a tabela muda.
  *
  * @author MASC
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 @TransactionManagement(TransactionManagementType.CONTAINER)
 @TransactionAttribute(TransactionAttributeType.SUPPORTS)
 public class EstadosBean implements EstadoBeanLocal {
     @PersistenceContext
     private EntityManager em;
     
-    private List<Estado> estados;
+    private CacheReferencia<Estado> cache;
     
+    /*
+     * Em um singleton, @TransactionAttribute só tem efeito no próprio método
+     * de callback (métodos privados não passam pelo container). REQUIRED
+     * aqui faz com que a semeadura rode em uma transação real, iniciada pelo
+     * container para o @PostConstruct.
+     */
     @PostConstruct   
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
     public void inicializar() {
         criarEstados();
-        carregarEstados();
+        cache = new CacheReferencia<>(new FonteJpa<>(em, Estado.class, "sigla", "atualizacao"));
+        cache.recarregar();
+    }
+
+    /**
+     * Verifica periodicamente se a tabela de estados mudou e, se for o caso,
+     * publica uma nova versão do cache. Só há leituras, então o timer roda
+     * sem transação (SUPPORTS, herdado da classe, não é permitido em
+     * callbacks de timer).
+     */
+    @Schedule(minute = "*/5", hour = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void verificarAlteracoes() {
+        cache.verificarAlteracoes();
     }
     
-    @TransactionAttribute(TransactionAttributeType.REQUIRED)
-    private void criarEstados() {       
-        try {
-            Properties properties = new Properties();
-            properties.load(EstadosBean.class.getResourceAsStream("estados.properties"));
-            Set<Object> chaves = properties.keySet();
-            
-            for (Object chave : chaves) {
-                Estado estado = new Estado();
-                estado.setSigla(chave.toString());
-                estado.setNome(properties.getProperty(chave.toString()));
-                em.persist(estado);
+    /*
+     * Semeia tb_estado a partir de estados.properties. Só grava o que falta
+     * ou está diferente: se a tabela já contém exatamente os estados do
+     * arquivo, nenhuma escrita é feita. As inserções são agrupadas em lotes
+     * JDBC pelo provedor (veja eclipselink.jdbc.batch-writing no
+     * persistence.xml).
+     */
+    private void criarEstados() {
+        FontePropriedades<Estado> fonte = new FontePropriedades<>(EstadosBean.class, "estados.properties",
+                new Mapeador<Estado>() {
+                    @Override
+                    public Estado criar(String codigo, String nome) {
+                        Estado estado = new Estado();
+                        estado.setSigla(codigo);
+                        estado.setNome(nome);
+                        return estado;
+                    }
+                });
+
+        Map<String, Estado> existentes = new HashMap<>();
+        for (Estado estado : em.createQuery("SELECT e FROM Estado e", Estado.class).getResultList()) {
+            existentes.put(estado.getSigla(), estado);
+        }
+
+        for (Estado esperado : fonte.carregar()) {
+            Estado existente = existentes.get(esperado.getSigla());
+            if (existente == null) {
+                em.persist(esperado);
+            } else if (!existente.getNome().equals(esperado.getNome())) {
+                existente.setNome(esperado.getNome());
             }
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
         }
     }
     
-    private void carregarEstados() {
-        TypedQuery<Estado> query = em.createQuery("SELECT e FROM Estado e ORDER BY e.sigla", Estado.class);
-        this.estados = query.getResultList();
-    }
-
     @Override
     public List consultarEstador() {
-        return estados;
+        return cache.consultarVersao().getItens();
     }
 }
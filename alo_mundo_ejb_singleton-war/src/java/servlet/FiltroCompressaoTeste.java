@@ -0,0 +1,19 @@
+package servlet;
+
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebInitParam;
+import modelo.filtro.FiltroCompressao;
+
+/**
+ * Comprime a página /teste, que lista todos os estados.
+ *
+ * @author MASC
+ */
+@WebFilter(filterName = "FiltroCompressaoTeste", urlPatterns = {"/teste"}, asyncSupported = true,
+        initParams = {
+            @WebInitParam(name = "tamanhoBuffer", value = "16384"),
+            @WebInitParam(name = "limiteCompressao", value = "1024")
+        })
+public class FiltroCompressaoTeste extends FiltroCompressao {
+
+}
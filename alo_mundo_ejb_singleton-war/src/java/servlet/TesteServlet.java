@@ -3,23 +3,44 @@ package servlet;
 import ejb.dominio.Estado;
 import ejb.teste.EstadoBeanLocal;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.List;
+import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import modelo.Modelo;
+import modelo.servlet.ProcessamentoAssincrono;
 
 /**
  *
  * @author MASC
  */
-@WebServlet(name = "TesteServlet", urlPatterns = {"/teste"})
+@WebServlet(name = "TesteServlet", urlPatterns = {"/teste"}, asyncSupported = true)
 public class TesteServlet extends HttpServlet {
     @EJB
     private EstadoBeanLocal estadoBean;
+    private static final Modelo INICIO = Modelo.compilar("<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "<head>\n"
+            + "<title>Estados do Brasil</title>\n"
+            + "</head>\n"
+            + "<body>\n");
+    private static final Modelo ESTADO = Modelo.compilar("<h1>${sigla}:${nome}</h1>\n");
+    private static final Modelo FIM = Modelo.compilar("</body>\n</html>\n");
+
+    @Resource
+    private ManagedExecutorService executor;
+    private ProcessamentoAssincrono processamento;
+
+    @Override
+    public void init() throws ServletException {
+        processamento = new ProcessamentoAssincrono(executor, getServletConfig());
+    }
 
     /**
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
@@ -33,19 +54,13 @@ public class TesteServlet extends HttpServlet {
     protected void processRequest(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         response.setContentType("text/html;charset=UTF-8");
-        try (PrintWriter out = response.getWriter()) {
-            out.println("<!DOCTYPE html>");
-            out.println("<html>");
-            out.println("<head>");
-            out.println("<title>Estados do Brasil</title>");            
-            out.println("</head>");
-            out.println("<body>");
+        try (ServletOutputStream out = response.getOutputStream()) {
+            INICIO.escrever(out);
             List<Estado> estados = estadoBean.consultarEstador();
             for (Estado estado : estados) {
-                out.println("<h1>" + estado.getSigla() + ":" + estado.getNome() + "</h1>");
+                ESTADO.escrever(out, estado.getSigla(), estado.getNome());
             }
-            out.println("</body>");
-            out.println("</html>");
+            FIM.escrever(out);
         }
     }
 
@@ -61,7 +76,7 @@ public class TesteServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        processamento.processar(request, response, this::processRequest);
     }
 
     /**
@@ -75,7 +90,7 @@ public class TesteServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        processamento.processar(request, response, this::processRequest);
     }
 
     /**
@@ -0,0 +1,72 @@
+package referencia;
+
+import java.util.Collections;
+
+/**
+ * Cache em memória de uma tabela de referência, com um único modelo de
+ * recarga para qualquer origem (FonteReferencia).
+ *
+ * As leituras não usam bloqueio: elas acessam o snapshot imutável publicado
+ * na referência volatile. A recarga monta uma nova VersaoReferencia, com seus
+ * índices, antes de substituí-la; quem lê sempre enxerga uma versão completa.
+ * Até a primeira carga terminar, a versão publicada é a 0, vazia.
+ *
+ * @param <T> tipo do item de referência.
+ * @author MASC
+ */
+public class CacheReferencia<T extends ItemReferencia> {
+    private final FonteReferencia<T> fonte;
+    private volatile VersaoReferencia<T> versao = new VersaoReferencia<>(0, 0, Collections.<T>emptyList());
+    /*
+     * Marcador de alteração correspondente à versão atual.
+     */
+    private volatile String marcador;
+
+    public CacheReferencia(FonteReferencia<T> fonte) {
+        this.fonte = fonte;
+    }
+
+    /**
+     * Lê novamente a origem e substitui a versão atual de uma só vez. As
+     * recargas são serializadas entre si, mas nunca bloqueiam as consultas,
+     * que continuam lendo a versão anterior até a troca.
+     *
+     * @throws RuntimeException se a origem não puder ser lida; nesse caso a
+     * versão anterior continua publicada.
+     */
+    public synchronized void recarregar() {
+        /*
+         * O marcador é lido antes dos itens: se a origem mudar entre as duas
+         * leituras, a próxima verificação apenas fará uma recarga a mais.
+         */
+        String novoMarcador = fonte.lerMarcador();
+        VersaoReferencia<T> atual = this.versao;
+        this.versao = new VersaoReferencia<>(atual.getNumero() + 1, System.currentTimeMillis(), fonte.carregar());
+        this.marcador = novoMarcador;
+    }
+
+    /**
+     * Recarrega somente se o marcador de alteração da origem mudou desde a
+     * última recarga.
+     *
+     * @return true se houve recarga.
+     */
+    public boolean verificarAlteracoes() {
+        if (fonte.lerMarcador().equals(marcador)) {
+            return false;
+        }
+        recarregar();
+        return true;
+    }
+
+    /**
+     * Indica se a primeira carga já terminou.
+     */
+    public boolean isAquecido() {
+        return this.versao.getNumero() > 0;
+    }
+
+    public VersaoReferencia<T> consultarVersao() {
+        return this.versao;
+    }
+}
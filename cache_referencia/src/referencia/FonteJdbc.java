@@ -0,0 +1,97 @@
+package referencia;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * Lê uma tabela de referência (código, nome) via JDBC.
+ *
+ * As consultas são montadas uma única vez no construtor e executadas como
+ * PreparedStatement, o que permite ao pool de conexões reaproveitar o
+ * statement já preparado. As linhas são lidas pelo rótulo da coluna, com
+ * fetch size ajustado, para um buffer privado que só é devolvido se a
+ * leitura terminar sem erro.
+ *
+ * @param <T> tipo do item de referência criado para cada linha.
+ * @author MASC
+ */
+public class FonteJdbc<T extends ItemReferencia> implements FonteReferencia<T> {
+    private static final int FETCH_SIZE_PADRAO = 100;
+
+    private final DataSource dataSource;
+    private final Mapeador<T> mapeador;
+    private final String sqlItens;
+    private final String sqlMarcador;
+    private final boolean marcadorComAtualizacao;
+    private final int fetchSize;
+
+    /**
+     * @param dataSource origem das conexões.
+     * @param tabela nome da tabela de referência.
+     * @param colunaCodigo coluna com o código (por exemplo, txt_sigla).
+     * @param colunaNome coluna com o nome.
+     * @param colunaAtualizacao coluna com a data da última alteração da
+     * linha, usada no marcador de alteração. Pode ser null quando a tabela
+     * não tem essa coluna: o marcador passa a ser só a quantidade de linhas,
+     * e alterações que não mudam essa quantidade só são vistas em recargas
+     * explícitas.
+     * @param mapeador cria o item a partir do código e do nome.
+     */
+    public FonteJdbc(DataSource dataSource, String tabela, String colunaCodigo,
+            String colunaNome, String colunaAtualizacao, Mapeador<T> mapeador) {
+        this(dataSource, tabela, colunaCodigo, colunaNome, colunaAtualizacao, mapeador, FETCH_SIZE_PADRAO);
+    }
+
+    public FonteJdbc(DataSource dataSource, String tabela, String colunaCodigo,
+            String colunaNome, String colunaAtualizacao, Mapeador<T> mapeador, int fetchSize) {
+        this.dataSource = dataSource;
+        this.mapeador = mapeador;
+        this.fetchSize = fetchSize;
+        this.sqlItens = "SELECT " + colunaCodigo + " AS codigo, " + colunaNome + " AS nome FROM "
+                + tabela + " ORDER BY " + colunaCodigo;
+        this.marcadorComAtualizacao = colunaAtualizacao != null;
+        this.sqlMarcador = marcadorComAtualizacao
+                ? "SELECT COUNT(*) AS quantidade, MAX(" + colunaAtualizacao + ") AS atualizacao FROM " + tabela
+                : "SELECT COUNT(*) AS quantidade FROM " + tabela;
+    }
+
+    @Override
+    public List<T> carregar() {
+        List<T> buffer = new ArrayList<>();
+        try (Connection con = dataSource.getConnection();
+                PreparedStatement pstmt = con.prepareStatement(sqlItens)) {
+            pstmt.setFetchSize(fetchSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    buffer.add(mapeador.criar(rs.getString("codigo"), rs.getString("nome")));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Quantidade de linhas e, se configurada, maior data de atualização da
+     * tabela.
+     */
+    @Override
+    public String lerMarcador() {
+        try (Connection con = dataSource.getConnection();
+                PreparedStatement pstmt = con.prepareStatement(sqlMarcador);
+                ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            String quantidade = Long.toString(rs.getLong("quantidade"));
+            return marcadorComAtualizacao ? quantidade + "|" + rs.getTimestamp("atualizacao") : quantidade;
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+    }
+}
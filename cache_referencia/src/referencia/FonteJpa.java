@@ -0,0 +1,67 @@
+package referencia;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+
+/**
+ * Lê uma tabela de referência mapeada como entidade JPA. A própria entidade
+ * implementa ItemReferencia.
+ *
+ * @param <T> entidade de referência.
+ * @author MASC
+ */
+public class FonteJpa<T extends ItemReferencia> implements FonteReferencia<T> {
+    private final EntityManager em;
+    private final Class<T> tipo;
+    private final String jpqlItens;
+    private final String jpqlMarcador;
+    private final boolean marcadorComAtualizacao;
+
+    /**
+     * @param em EntityManager usado nas consultas.
+     * @param tipo classe da entidade.
+     * @param atributoOrdenacao atributo usado para ordenar os itens.
+     */
+    public FonteJpa(EntityManager em, Class<T> tipo, String atributoOrdenacao) {
+        this(em, tipo, atributoOrdenacao, null);
+    }
+
+    /**
+     * @param em EntityManager usado nas consultas.
+     * @param tipo classe da entidade.
+     * @param atributoOrdenacao atributo usado para ordenar os itens.
+     * @param atributoAtualizacao atributo com a data da última alteração da
+     * entidade, usado no marcador de alteração. Pode ser null: o marcador
+     * passa a ser só a quantidade de linhas, e alterações que não mudam essa
+     * quantidade só são vistas em recargas explícitas.
+     */
+    public FonteJpa(EntityManager em, Class<T> tipo, String atributoOrdenacao, String atributoAtualizacao) {
+        this.em = em;
+        this.tipo = tipo;
+        String entidade = tipo.getSimpleName();
+        this.jpqlItens = "SELECT e FROM " + entidade + " e ORDER BY e." + atributoOrdenacao;
+        this.marcadorComAtualizacao = atributoAtualizacao != null;
+        this.jpqlMarcador = marcadorComAtualizacao
+                ? "SELECT COUNT(e), MAX(e." + atributoAtualizacao + ") FROM " + entidade + " e"
+                : "SELECT COUNT(e) FROM " + entidade + " e";
+    }
+
+    @Override
+    public List<T> carregar() {
+        return new ArrayList<>(em.createQuery(jpqlItens, tipo).getResultList());
+    }
+
+    /**
+     * Quantidade de linhas e, se configurada, maior data de atualização da
+     * tabela.
+     */
+    @Override
+    public String lerMarcador() {
+        if (!marcadorComAtualizacao) {
+            return String.valueOf(em.createQuery(jpqlMarcador, Long.class).getSingleResult());
+        }
+        Object[] marcador = em.createQuery(jpqlMarcador, Object[].class).getSingleResult();
+        return marcador[0] + "|" + marcador[1];
+    }
+}
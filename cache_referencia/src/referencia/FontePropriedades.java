@@ -0,0 +1,72 @@
+package referencia;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Lê uma tabela de referência de um arquivo de propriedades no classpath, no
+ * formato codigo=nome (por exemplo, PE=Pernambuco).
+ *
+ * @param <T> tipo do item de referência criado para cada entrada.
+ * @author MASC
+ */
+public class FontePropriedades<T extends ItemReferencia> implements FonteReferencia<T> {
+    private final Class<?> base;
+    private final String recurso;
+    private final Mapeador<T> mapeador;
+
+    /**
+     * @param base classe usada para localizar o recurso.
+     * @param recurso nome do arquivo, relativo ao pacote da classe base.
+     * @param mapeador cria o item a partir do código e do nome.
+     */
+    public FontePropriedades(Class<?> base, String recurso, Mapeador<T> mapeador) {
+        this.base = base;
+        this.recurso = recurso;
+        this.mapeador = mapeador;
+    }
+
+    @Override
+    public List<T> carregar() {
+        List<T> buffer = new ArrayList<>();
+        for (Map.Entry<String, String> entrada : lerEntradas().entrySet()) {
+            buffer.add(mapeador.criar(entrada.getKey(), entrada.getValue()));
+        }
+        return buffer;
+    }
+
+    /**
+     * O arquivo é pequeno: o marcador é o próprio conteúdo resumido em hash.
+     */
+    @Override
+    public String lerMarcador() {
+        TreeMap<String, String> entradas = lerEntradas();
+        return entradas.size() + "|" + entradas.hashCode();
+    }
+
+    /*
+     * Entradas ordenadas pelo código, com espaços nas extremidades removidos.
+     */
+    private TreeMap<String, String> lerEntradas() {
+        Properties properties = new Properties();
+        try (InputStream in = base.getResourceAsStream(recurso)) {
+            if (in == null) {
+                throw new IOException("Recurso não encontrado: " + recurso);
+            }
+            properties.load(in);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+
+        TreeMap<String, String> entradas = new TreeMap<>();
+        for (String chave : properties.stringPropertyNames()) {
+            entradas.put(chave.trim(), properties.getProperty(chave).trim());
+        }
+        return entradas;
+    }
+}
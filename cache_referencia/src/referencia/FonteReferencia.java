@@ -0,0 +1,25 @@
+package referencia;
+
+import java.util.List;
+
+/**
+ * Origem dos dados de uma tabela de referência (arquivo de propriedades, JPA
+ * ou JDBC). O CacheReferencia não conhece a origem: ele só pede a lista de
+ * itens e, periodicamente, o marcador de alteração.
+ *
+ * @param <T> tipo do item de referência.
+ * @author MASC
+ */
+public interface FonteReferencia<T extends ItemReferencia> {
+    /**
+     * @return lista nova com todos os itens, ainda não compartilhada.
+     * @throws RuntimeException se a origem não puder ser lida.
+     */
+    public List<T> carregar();
+
+    /**
+     * @return valor barato de calcular que muda sempre que os itens mudam.
+     * @throws RuntimeException se a origem não puder ser lida.
+     */
+    public String lerMarcador();
+}
@@ -0,0 +1,12 @@
+package referencia;
+
+/**
+ * Item de uma tabela de referência no formato (código, nome), como um estado
+ * (sigla, nome), um país ou uma bandeira de cartão.
+ *
+ * @author MASC
+ */
+public interface ItemReferencia {
+    public String getCodigo();
+    public String getNome();
+}
@@ -0,0 +1,12 @@
+package referencia;
+
+/**
+ * Cria o item de referência correspondente a um par (código, nome) lido da
+ * origem.
+ *
+ * @param <T> tipo do item de referência.
+ * @author MASC
+ */
+public interface Mapeador<T extends ItemReferencia> {
+    public T criar(String codigo, String nome);
+}
@@ -0,0 +1,233 @@
+package referencia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Snapshot imutável de uma tabela de referência. Cada recarga do
+ * CacheReferencia publica uma nova versão com número sequencial, o que
+ * permite a quem consome os dados saber se algo mudou sem comparar as listas.
+ *
+ * Os índices de consulta por código e por prefixo do nome também são montados
+ * uma única vez por versão, de modo que as consultas não alocam objetos nem
+ * percorrem a lista inteira.
+ *
+ * @param <T> tipo do item de referência.
+ * @author MASC
+ */
+public class VersaoReferencia<T extends ItemReferencia> {
+    private final long numero;
+    private final long dataCarga;
+    private final List<T> itens;
+    /*
+     * Itens ordenados pelo código, sem diferenciar maiúsculas de minúsculas,
+     * para a busca binária de porCodigo.
+     */
+    private final List<T> ordenadosPorCodigo;
+    /*
+     * Índice direto por sigla: quando todos os códigos têm exatamente duas
+     * letras (estados, países no formato ISO de duas letras), o item fica na
+     * posição (primeira letra * 26 + segunda letra) e porCodigo não precisa
+     * comparar strings. Nas demais tabelas o índice é null e porCodigo usa a
+     * busca binária.
+     */
+    private final Object[] porSigla;
+    /*
+     * Árvore de prefixos dos nomes. Cada nó guarda, já pronta, a visão
+     * somente leitura dos itens cujo nome começa com aquele prefixo, em ordem
+     * alfabética, de modo que porPrefixoNome apenas percorre a árvore.
+     */
+    private final No<T> raizNomes;
+
+    /**
+     * @param itens itens da versão. A lista é copiada: alterações posteriores
+     * na lista recebida não afetam a versão nem seus índices.
+     */
+    public VersaoReferencia(long numero, long dataCarga, List<T> itens) {
+        this.numero = numero;
+        this.dataCarga = dataCarga;
+        this.itens = Collections.unmodifiableList(new ArrayList<>(itens));
+        this.ordenadosPorCodigo = ordenar(this.itens, new Comparator<T>() {
+            @Override
+            public int compare(T i1, T i2) {
+                return String.CASE_INSENSITIVE_ORDER.compare(i1.getCodigo(), i2.getCodigo());
+            }
+        });
+        this.porSigla = indexarSiglas(this.itens);
+        List<T> ordenadosPorNome = ordenar(this.itens, new Comparator<T>() {
+            @Override
+            public int compare(T i1, T i2) {
+                return String.CASE_INSENSITIVE_ORDER.compare(i1.getNome(), i2.getNome());
+            }
+        });
+        this.raizNomes = indexarNomes(ordenadosPorNome, 0, ordenadosPorNome.size(), 0);
+    }
+
+    public long getNumero() {
+        return numero;
+    }
+
+    /**
+     * @return instante da carga, em milissegundos desde a época.
+     */
+    public long getDataCarga() {
+        return dataCarga;
+    }
+
+    public List<T> getItens() {
+        return itens;
+    }
+
+    /**
+     * @param codigo código do item, sem diferenciar maiúsculas de minúsculas.
+     * @return o item correspondente ou null, se não houver.
+     */
+    @SuppressWarnings("unchecked")
+    public T porCodigo(String codigo) {
+        if (codigo == null) {
+            return null;
+        }
+
+        if (porSigla != null) {
+            int posicao = posicaoSigla(codigo);
+            return posicao < 0 ? null : (T) porSigla[posicao];
+        }
+
+        int baixo = 0;
+        int alto = ordenadosPorCodigo.size() - 1;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            T item = ordenadosPorCodigo.get(meio);
+            int comparacao = String.CASE_INSENSITIVE_ORDER.compare(item.getCodigo(), codigo);
+            if (comparacao < 0) {
+                baixo = meio + 1;
+            } else if (comparacao > 0) {
+                alto = meio - 1;
+            } else {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Consulta para autocompletar: devolve, em ordem alfabética, os itens
+     * cujo nome começa com o prefixo informado, sem diferenciar maiúsculas de
+     * minúsculas. A lista devolvida é uma visão somente leitura montada na
+     * carga da versão; a consulta não aloca objetos.
+     */
+    public List<T> porPrefixoNome(String prefixo) {
+        if (prefixo == null) {
+            return Collections.emptyList();
+        }
+
+        No<T> no = raizNomes;
+        for (int i = 0; i < prefixo.length() && no != null; i++) {
+            no = no.filho(normalizar(prefixo.charAt(i)));
+        }
+        return no == null ? Collections.<T>emptyList() : no.itens;
+    }
+
+    /*
+     * Monta o índice direto por sigla, ou devolve null se algum código não
+     * for uma sigla de duas letras. Em caso de códigos repetidos, vale o
+     * primeiro, como na busca linear.
+     */
+    private static Object[] indexarSiglas(List<? extends ItemReferencia> itens) {
+        Object[] indice = new Object[26 * 26];
+        for (ItemReferencia item : itens) {
+            int posicao = item.getCodigo() == null ? -1 : posicaoSigla(item.getCodigo());
+            if (posicao < 0) {
+                return null;
+            }
+            if (indice[posicao] == null) {
+                indice[posicao] = item;
+            }
+        }
+        return indice;
+    }
+
+    private static int posicaoSigla(String codigo) {
+        if (codigo.length() != 2) {
+            return -1;
+        }
+        int primeira = letra(codigo.charAt(0));
+        int segunda = letra(codigo.charAt(1));
+        return primeira < 0 || segunda < 0 ? -1 : primeira * 26 + segunda;
+    }
+
+    private static int letra(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        return -1;
+    }
+
+    /*
+     * Monta o nó do prefixo de tamanho "posicao" comum aos itens
+     * ordenados[inicio, fim). Como a lista está em ordem alfabética, os itens
+     * de cada próximo caractere formam faixas contíguas, e o nome igual ao
+     * próprio prefixo, se houver, vem antes de todos.
+     */
+    private static <T extends ItemReferencia> No<T> indexarNomes(List<T> ordenados, int inicio, int fim, int posicao) {
+        StringBuilder letras = new StringBuilder();
+        List<No<T>> filhos = new ArrayList<>();
+        int i = inicio;
+        while (i < fim && ordenados.get(i).getNome().length() <= posicao) {
+            i++;
+        }
+        while (i < fim) {
+            char letra = normalizar(ordenados.get(i).getNome().charAt(posicao));
+            int j = i + 1;
+            while (j < fim && normalizar(ordenados.get(j).getNome().charAt(posicao)) == letra) {
+                j++;
+            }
+            letras.append(letra);
+            filhos.add(indexarNomes(ordenados, i, j, posicao + 1));
+            i = j;
+        }
+        return new No<>(letras.toString().toCharArray(), filhos, ordenados.subList(inicio, fim));
+    }
+
+    /*
+     * Mesma regra de String.CASE_INSENSITIVE_ORDER, que também define a ordem
+     * dos nomes no índice.
+     */
+    private static char normalizar(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> ordenar(List<T> itens, Comparator<T> comparador) {
+        T[] ordenados = (T[]) itens.toArray();
+        Arrays.sort(ordenados, comparador);
+        return Collections.unmodifiableList(Arrays.asList(ordenados));
+    }
+
+    private static class No<T> {
+        /*
+         * Próximos caracteres possíveis, em ordem crescente, e o nó de cada um.
+         */
+        private final char[] letras;
+        private final No<T>[] filhos;
+        private final List<T> itens;
+
+        @SuppressWarnings("unchecked")
+        No(char[] letras, List<No<T>> filhos, List<T> itens) {
+            this.letras = letras;
+            this.filhos = filhos.toArray(new No[filhos.size()]);
+            this.itens = itens;
+        }
+
+        No<T> filho(char letra) {
+            int posicao = Arrays.binarySearch(letras, letra);
+            return posicao < 0 ? null : filhos[posicao];
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package referencia;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes do CacheReferencia. O teste de concorrência recarrega o cache sem
+ * parar enquanto várias threads leem, e verifica que nenhuma leitura enxerga
+ * uma versão incompleta ou misturada.
+ *
+ * @author MASC
+ */
+public class CacheReferenciaTest {
+    private static final int ITENS = 27;
+    //Deixa um processador livre para a thread de recarga.
+    private static final int LEITORES = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+    private static final long DURACAO = 2000;
+
+    @Test
+    public void leitoresNuncaVeemVersaoIncompleta() throws Exception {
+        final FonteGeracoes fonte = new FonteGeracoes();
+        final CacheReferencia<Item> cache = new CacheReferencia<>(fonte);
+        cache.recarregar();
+
+        final AtomicBoolean parar = new AtomicBoolean();
+        final AtomicReference<String> erro = new AtomicReference<>();
+        final AtomicLong leituras = new AtomicLong();
+        final CountDownLatch fim = new CountDownLatch(LEITORES + 1);
+
+        for (int i = 0; i < LEITORES; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long ultimaVersao = 0;
+                        while (!parar.get() && erro.get() == null) {
+                            VersaoReferencia<Item> versao = cache.consultarVersao();
+                            if (versao.getNumero() < ultimaVersao) {
+                                erro.set("Versão voltou de " + ultimaVersao + " para " + versao.getNumero());
+                            }
+                            ultimaVersao = versao.getNumero();
+                            String problema = verificar(versao);
+                            if (problema != null) {
+                                erro.set(problema);
+                            }
+                            leituras.incrementAndGet();
+                        }
+                    } finally {
+                        fim.countDown();
+                    }
+                }
+            }, "leitor-" + i).start();
+        }
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!parar.get()) {
+                        cache.recarregar();
+                    }
+                } finally {
+                    fim.countDown();
+                }
+            }
+        }, "recarga").start();
+
+        Thread.sleep(DURACAO);
+        parar.set(true);
+        assertTrue(fim.await(10, TimeUnit.SECONDS));
+        assertNull(erro.get(), erro.get());
+        assertTrue("Poucas recargas: " + fonte.geracao.get(), fonte.geracao.get() > 10);
+        System.out.printf("%d leituras concorrentes com %d recargas, nenhuma versão incompleta%n",
+                leituras.get(), fonte.geracao.get());
+    }
+
+    @Test
+    public void falhaNaRecargaMantemVersaoAnterior() {
+        FonteGeracoes fonte = new FonteGeracoes();
+        CacheReferencia<Item> cache = new CacheReferencia<>(fonte);
+        cache.recarregar();
+        VersaoReferencia<Item> anterior = cache.consultarVersao();
+
+        fonte.falhar = true;
+        try {
+            cache.recarregar();
+            fail("A falha da origem deveria ser propagada");
+        } catch (IllegalStateException ex) {
+            assertSame(anterior, cache.consultarVersao());
+        }
+    }
+
+    @Test
+    public void verificarAlteracoesSoRecarregaQuandoMarcadorMuda() {
+        FonteGeracoes fonte = new FonteGeracoes();
+        CacheReferencia<Item> cache = new CacheReferencia<>(fonte);
+        assertFalse(cache.isAquecido());
+        cache.recarregar();
+        assertTrue(cache.isAquecido());
+
+        assertFalse(cache.verificarAlteracoes());
+        assertEquals(1, cache.consultarVersao().getNumero());
+
+        fonte.marcador.incrementAndGet();
+        assertTrue(cache.verificarAlteracoes());
+        assertEquals(2, cache.consultarVersao().getNumero());
+    }
+
+    /*
+     * Uma versão está correta se tem todos os itens, todos da mesma geração,
+     * e se os índices da versão apontam para os itens dela.
+     */
+    private static String verificar(VersaoReferencia<Item> versao) {
+        List<Item> itens = versao.getItens();
+        if (versao.getNumero() == 0) {
+            return null;
+        }
+        if (itens.size() != ITENS) {
+            return "Versão " + versao.getNumero() + " com " + itens.size() + " itens";
+        }
+        int geracao = itens.get(0).geracao;
+        for (Item item : itens) {
+            if (item.geracao != geracao) {
+                return "Versão " + versao.getNumero() + " mistura as gerações " + geracao + " e " + item.geracao;
+            }
+        }
+        Item indexado = versao.porCodigo(itens.get(ITENS - 1).getCodigo());
+        if (indexado == null || indexado.geracao != geracao) {
+            return "Índice por código da versão " + versao.getNumero() + " não corresponde aos itens";
+        }
+        if (versao.porPrefixoNome("Item").size() != ITENS) {
+            return "Índice por nome da versão " + versao.getNumero() + " incompleto";
+        }
+        return null;
+    }
+
+    /*
+     * Cada carga devolve uma nova geração de itens. Se a lista fosse
+     * publicada antes de pronta, um leitor poderia encontrá-la pela metade.
+     */
+    private static class FonteGeracoes implements FonteReferencia<Item> {
+        private final AtomicInteger geracao = new AtomicInteger();
+        private final AtomicInteger marcador = new AtomicInteger();
+        private volatile boolean falhar;
+
+        @Override
+        public List<Item> carregar() {
+            if (falhar) {
+                throw new IllegalStateException("Origem indisponível");
+            }
+            int atual = geracao.incrementAndGet();
+            List<Item> itens = new ArrayList<>();
+            for (int i = 0; i < ITENS; i++) {
+                itens.add(new Item(String.format("%02d", i), "Item " + i, atual));
+            }
+            return itens;
+        }
+
+        @Override
+        public String lerMarcador() {
+            return String.valueOf(marcador.get());
+        }
+    }
+
+    private static class Item implements ItemReferencia {
+        private final String codigo;
+        private final String nome;
+        private final int geracao;
+
+        Item(String codigo, String nome, int geracao) {
+            this.codigo = codigo;
+            this.nome = nome;
+            this.geracao = geracao;
+        }
+
+        @Override
+        public String getCodigo() {
+            return codigo;
+        }
+
+        @Override
+        public String getNome() {
+            return nome;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package referencia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes dos índices de VersaoReferencia, comparados com a busca linear na
+ * lista de itens.
+ *
+ * @author MASC
+ */
+public class VersaoReferenciaTest {
+    private static final String[][] ESTADOS = {
+        {"AC", "Acre"}, {"AL", "Alagoas"}, {"AP", "Amapá"}, {"AM", "Amazonas"}, {"BA", "Bahia"},
+        {"CE", "Ceará"}, {"DF", "Distrito Federal"}, {"ES", "Espírito Santo"}, {"GO", "Goiás"},
+        {"MA", "Maranhão"}, {"MT", "Mato Grosso"}, {"MS", "Mato Grosso do Sul"}, {"MG", "Minas Gerais"},
+        {"PA", "Pará"}, {"PB", "Paraíba"}, {"PR", "Paraná"}, {"PE", "Pernambuco"}, {"PI", "Piauí"},
+        {"RJ", "Rio de Janeiro"}, {"RN", "Rio Grande do Norte"}, {"RS", "Rio Grande do Sul"},
+        {"RO", "Rondônia"}, {"RR", "Roraima"}, {"SC", "Santa Catarina"}, {"SP", "São Paulo"},
+        {"SE", "Sergipe"}, {"TO", "Tocantins"}
+    };
+    private static final int CONSULTAS = 2000000;
+
+    private final VersaoReferencia<Item> versao = new VersaoReferencia<>(1, 0, criarEstados());
+
+    /*
+     * A versão copia a lista recebida: quem a montou não consegue alterar o
+     * snapshot publicado nem desordenar seus índices.
+     */
+    @Test
+    public void alteracoesNaListaOriginalNaoAfetamAVersao() {
+        List<Item> estados = criarEstados();
+        VersaoReferencia<Item> outra = new VersaoReferencia<>(2, 0, estados);
+        estados.set(0, new Item("ZZ", "Zzz"));
+        estados.clear();
+        assertEquals(ESTADOS.length, outra.getItens().size());
+        assertEquals("Acre", outra.getItens().get(0).getNome());
+        assertNull(outra.porCodigo("ZZ"));
+        assertEquals("Acre", outra.porCodigo("AC").getNome());
+        try {
+            outra.getItens().clear();
+            fail("O snapshot não pode ser alterado");
+        } catch (UnsupportedOperationException ex) {
+            assertEquals(ESTADOS.length, outra.getItens().size());
+        }
+    }
+
+    @Test
+    public void porCodigoIgnoraMaiusculas() {
+        assertEquals("Pernambuco", versao.porCodigo("PE").getNome());
+        assertEquals("Pernambuco", versao.porCodigo("pe").getNome());
+        assertNull(versao.porCodigo("XX"));
+        assertNull(versao.porCodigo(null));
+    }
+
+    @Test
+    public void porCodigoIgualABuscaLinear() {
+        for (Item item : versao.getItens()) {
+            assertSame(buscarCodigo(versao.getItens(), item.getCodigo()), versao.porCodigo(item.getCodigo()));
+        }
+    }
+
+    /*
+     * Códigos que não são siglas de duas letras desativam o índice direto;
+     * porCodigo passa a usar a busca binária.
+     */
+    @Test
+    public void porCodigoSemSiglas() {
+        List<Item> bandeiras = Arrays.asList(new Item("VISA", "Visa"), new Item("MC", "Mastercard"),
+                new Item("AMEX", "American Express"), new Item("E1", "Elo"));
+        VersaoReferencia<Item> outra = new VersaoReferencia<>(1, 0, bandeiras);
+        for (Item item : bandeiras) {
+            assertSame(item, outra.porCodigo(item.getCodigo().toLowerCase()));
+        }
+        assertNull(outra.porCodigo("DINERS"));
+        assertNull(outra.porCodigo(""));
+    }
+
+    /*
+     * As listas de porPrefixoNome são montadas na carga: a mesma consulta
+     * devolve sempre a mesma instância, que não pode ser alterada.
+     */
+    @Test
+    public void porPrefixoNomeDevolveVisaoPronta() {
+        List<Item> encontrados = versao.porPrefixoNome("Rio");
+        assertEquals(3, encontrados.size());
+        assertSame(encontrados, versao.porPrefixoNome("rIO"));
+        assertSame(versao.porPrefixoNome(""), versao.porPrefixoNome(""));
+        try {
+            encontrados.clear();
+            fail("A visão do índice não pode ser alterada");
+        } catch (UnsupportedOperationException ex) {
+            assertEquals(3, versao.porPrefixoNome("Rio").size());
+        }
+    }
+
+    /*
+     * Todos os prefixos de todos os nomes, em maiúsculas e minúsculas, devem
+     * devolver os mesmos itens que o filtro linear, em ordem alfabética.
+     */
+    @Test
+    public void porPrefixoNomeIgualAoFiltroLinear() {
+        for (Item item : versao.getItens()) {
+            for (int i = 0; i <= item.getNome().length(); i++) {
+                String prefixo = item.getNome().substring(0, i);
+                for (String variante : new String[]{prefixo, prefixo.toUpperCase(), prefixo.toLowerCase()}) {
+                    assertEquals(variante, filtrarPrefixo(versao.getItens(), variante), versao.porPrefixoNome(variante));
+                }
+            }
+        }
+        assertTrue(versao.porPrefixoNome("Xingu").isEmpty());
+        assertTrue(versao.porPrefixoNome(null).isEmpty());
+    }
+
+    @Test
+    public void porPrefixoNomeEmOrdemAlfabetica() {
+        List<String> nomes = new ArrayList<>();
+        for (Item item : versao.porPrefixoNome("mato")) {
+            nomes.add(item.getNome());
+        }
+        assertEquals(Arrays.asList("Mato Grosso", "Mato Grosso do Sul"), nomes);
+    }
+
+    /*
+     * Comparação simples de tempo (sem JMH, que não faz parte das bibliotecas
+     * do projeto): cada consulta é repetida CONSULTAS vezes, depois de uma
+     * rodada de aquecimento. Os números são apenas informativos.
+     */
+    @Test
+    public void comparacaoComBuscaLinear() {
+        final List<Item> itens = versao.getItens();
+        final String[] codigos = new String[ESTADOS.length];
+        final String[] prefixos = new String[ESTADOS.length];
+        for (int i = 0; i < ESTADOS.length; i++) {
+            codigos[i] = ESTADOS[i][0];
+            prefixos[i] = ESTADOS[i][1].substring(0, 3);
+        }
+
+        for (int rodada = 0; rodada < 2; rodada++) {
+            boolean imprimir = rodada == 1;
+            medir(imprimir, "porCodigo", new Consulta() {
+                @Override
+                public int executar(int i) {
+                    return versao.porCodigo(codigos[i % codigos.length]).hashCode();
+                }
+            });
+            medir(imprimir, "código, busca linear", new Consulta() {
+                @Override
+                public int executar(int i) {
+                    return buscarCodigo(itens, codigos[i % codigos.length]).hashCode();
+                }
+            });
+            medir(imprimir, "porPrefixoNome", new Consulta() {
+                @Override
+                public int executar(int i) {
+                    return versao.porPrefixoNome(prefixos[i % prefixos.length]).size();
+                }
+            });
+            medir(imprimir, "prefixo, filtro linear", new Consulta() {
+                @Override
+                public int executar(int i) {
+                    return filtrarPrefixo(itens, prefixos[i % prefixos.length]).size();
+                }
+            });
+        }
+    }
+
+    private interface Consulta {
+
+        int executar(int i);
+    }
+
+    private static void medir(boolean imprimir, String descricao, Consulta consulta) {
+        int soma = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < CONSULTAS; i++) {
+            soma += consulta.executar(i);
+        }
+        long duracao = System.nanoTime() - inicio;
+        if (imprimir) {
+            //A soma é impressa para que o JIT não elimine as consultas.
+            System.out.printf("%-24s %6.1f ns/consulta (%d)%n", descricao,
+                    duracao / (double) CONSULTAS, soma);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(duracao) < 60);
+    }
+
+    private static Item buscarCodigo(List<Item> itens, String codigo) {
+        for (Item item : itens) {
+            if (item.getCodigo().equalsIgnoreCase(codigo)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private static List<Item> filtrarPrefixo(List<Item> itens, String prefixo) {
+        List<Item> encontrados = new ArrayList<>();
+        for (Item item : itens) {
+            if (item.getNome().regionMatches(true, 0, prefixo, 0, prefixo.length())) {
+                encontrados.add(item);
+            }
+        }
+        encontrados.sort((i1, i2) -> String.CASE_INSENSITIVE_ORDER.compare(i1.getNome(), i2.getNome()));
+        return encontrados;
+    }
+
+    private static List<Item> criarEstados() {
+        List<Item> estados = new ArrayList<>();
+        for (String[] estado : ESTADOS) {
+            estados.add(new Item(estado[0], estado[1]));
+        }
+        return estados;
+    }
+
+    private static class Item implements ItemReferencia {
+        private final String codigo;
+        private final String nome;
+
+        Item(String codigo, String nome) {
+            this.codigo = codigo;
+            this.nome = nome;
+        }
+
+        @Override
+        public String getCodigo() {
+            return codigo;
+        }
+
+        @Override
+        public String getNome() {
+            return nome;
+        }
+    }
+}
@@ -2,12 +2,15 @@ package ejbtest.servlet;
 
 import ejbtest.beans.Hello;
 import java.io.IOException;
-import java.io.PrintWriter;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import modelo.Modelo;
+import modelo.servlet.ProcessamentoAssincrono;
 
 /**
  *
@@ -16,6 +19,25 @@ import javax.servlet.http.HttpServletResponse;
 public class HelloServlet extends HttpServlet {
     @Inject
     private Hello hello;
+    private static final Modelo PAGINA = Modelo.compilar("<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "<head>\n"
+            + "<title>Servlet HelloServlet</title>\n"
+            + "</head>\n"
+            + "<body>\n"
+            + "<h1>Servlet HelloServlet at ${contexto}</h1>\n"
+            + "<h1> ${mensagem}</h1>\n"
+            + "</body>\n"
+            + "</html>\n");
+
+    @Resource
+    private ManagedExecutorService executor;
+    private ProcessamentoAssincrono processamento;
+
+    @Override
+    public void init() throws ServletException {
+        processamento = new ProcessamentoAssincrono(executor, getServletConfig());
+    }
 
     /**
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
@@ -29,19 +51,7 @@ public class HelloServlet extends HttpServlet {
     protected void processRequest(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         response.setContentType("text/html;charset=UTF-8");
-        try (PrintWriter out = response.getWriter()) {
-            /* TODO output your page here. You may use following sample code. */
-            out.println("<!DOCTYPE html>");
-            out.println("<html>");
-            out.println("<head>");
-            out.println("<title>Servlet HelloServlet</title>");            
-            out.println("</head>");
-            out.println("<body>");
-            out.println("<h1>Servlet HelloServlet at " + request.getContextPath() + "</h1>");
-            out.println("<h1> " + hello.getMessage() + "</h1>");
-            out.println("</body>");
-            out.println("</html>");
-        }
+        PAGINA.escrever(response.getOutputStream(), request.getContextPath(), hello.getMessage());
     }
 
     // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
@@ -56,7 +66,7 @@ public class HelloServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        processamento.processar(request, response, this::processRequest);
     }
 
     /**
@@ -70,7 +80,7 @@ public class HelloServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        processamento.processar(request, response, this::processRequest);
     }
 
     /**
@@ -2,8 +2,8 @@ package ejbtestclient;
 
 import java.util.Properties;
 import javax.naming.Context;
-import javax.naming.InitialContext;
 import javax.naming.NamingException;
+import localizador.LocalizadorRemoto;
 import test.HelloRemote;
 
 /**
@@ -16,6 +16,10 @@ import test.HelloRemote;
 public class Client {
     private HelloRemote helloRemote;
     
+    /**
+     * O contexto e o stub vêm do LocalizadorRemoto: criar vários Client não
+     * reinicializa o ORB nem repete o lookup.
+     */
     public Client() {
         try {
             Properties props = new Properties();
@@ -24,8 +28,8 @@ public class Client {
             props.put(Context.STATE_FACTORIES, "com.sun.corba.ee.impl.presentation.rmi.JNDIStateFactoryImpl");
             props.setProperty("org.omg.CORBA.ORBInitialHost", "localhost");
             props.setProperty("org.omg.CORBA.ORBInitialPort", "3700");      
-            Context context = new InitialContext(props);
-            helloRemote = (HelloRemote) context.lookup("java:global/ejbtest/HelloBean!test.HelloRemote");
+            helloRemote = LocalizadorRemoto.para(props)
+                    .localizar("java:global/ejbtest/HelloBean!test.HelloRemote", HelloRemote.class);
         } catch (NamingException ex) {
             throw new RuntimeException(ex);
         }
@@ -0,0 +1,20 @@
+package exemplo.servlet;
+
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebInitParam;
+import modelo.filtro.FiltroCompressao;
+
+/**
+ * Aplica o FiltroCompressao à listagem de estados. A página HTML tem alguns
+ * KB e é comprimida; respostas 304 e páginas pequenas seguem sem alteração.
+ *
+ * @author MASC
+ */
+@WebFilter(filterName = "FiltroCompressaoEstados", urlPatterns = {"/estados"}, asyncSupported = true,
+        initParams = {
+            @WebInitParam(name = "tamanhoBuffer", value = "16384"),
+            @WebInitParam(name = "limiteCompressao", value = "1024")
+        })
+public class FiltroCompressaoEstados extends FiltroCompressao {
+
+}
@@ -0,0 +1,58 @@
+package exemplo.servlet;
+
+import exemplo.singleton.EstadoBeanLocal;
+import java.io.IOException;
+import javax.annotation.security.DeclareRoles;
+import javax.ejb.EJB;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.HttpConstraint;
+import javax.servlet.annotation.ServletSecurity;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Endpoint administrativo para forçar a recarga dos estados sem reiniciar a
+ * aplicação. A recarga é feita em segundo plano pelo EstadoBean; a resposta
+ * (202 Accepted) é devolvida imediatamente.
+ *
+ * Só usuários com o papel "administrador" podem chamar o endpoint; o papel é
+ * associado ao grupo "administradores" do realm em glassfish-web.xml.
+ *
+ * @author MASC
+ */
+@WebServlet(name = "RecargaEstadosServlet", urlPatterns = {"/admin/estados/recarregar"})
+@DeclareRoles("administrador")
+@ServletSecurity(@HttpConstraint(rolesAllowed = "administrador"))
+public class RecargaEstadosServlet extends HttpServlet {
+    @EJB
+    private EstadoBeanLocal estadoBean;
+
+    // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
+    /**
+     * Handles the HTTP <code>POST</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        estadoBean.solicitarRecarga();
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+    }
+
+    /**
+     * Returns a short description of the servlet.
+     *
+     * @return a String containing servlet description
+     */
+    @Override
+    public String getServletInfo() {
+        return "Força a recarga dos estados";
+    }// </editor-fold>
+
+}
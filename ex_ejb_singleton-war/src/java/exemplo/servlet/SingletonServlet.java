@@ -2,8 +2,14 @@ package exemplo.servlet;
 
 import exemplo.singleton.Estado;
 import exemplo.singleton.EstadoBeanLocal;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 import javax.ejb.EJB;
 import javax.servlet.ServletException;
@@ -11,6 +17,8 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import modelo.Modelo;
+import referencia.VersaoReferencia;
 
 /**
  *
@@ -20,6 +28,19 @@ import javax.servlet.http.HttpServletResponse;
 public class SingletonServlet extends HttpServlet {
     @EJB
     private EstadoBeanLocal estadoBean;
+    private static final Modelo INICIO = Modelo.compilar("<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "<head>\n"
+            + "<title>Servlet SingletonServlet</title>\n"
+            + "</head>\n"
+            + "<body>\n");
+    private static final Modelo ESTADO = Modelo.compilar("<h1>${sigla}:${nome}</h1>\n");
+    private static final Modelo FIM = Modelo.compilar("</body>\n</html>\n");
+    /*
+     * Página já renderizada e codificada em UTF-8 para a última versão dos
+     * estados. Só é refeita quando o EstadoBean publica uma nova versão.
+     */
+    private volatile PaginaEstados pagina;
 
     /**
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
@@ -32,24 +53,153 @@ public class SingletonServlet extends HttpServlet {
      */
     protected void processRequest(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        response.setContentType("text/html;charset=UTF-8");
-        try (PrintWriter out = response.getWriter()) {
-            /* TODO output your page here. You may use following sample code. */
-            out.println("<!DOCTYPE html>");
-            out.println("<html>");
-            out.println("<head>");
-            out.println("<title>Servlet SingletonServlet</title>");            
-            out.println("</head>");
-            out.println("<body>");
-            
-            List<Estado> estados = estadoBean.consultarEstados();
-            
-            for (Estado estado : estados) {
-                out.println("<h1>" + estado.getSigla() + ":" + estado.getNome() + "</h1>");
+        if (!estadoBean.isAquecido()) {
+            /* Os estados ainda estão sendo carregados: o cliente deve tentar de novo. */
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Estados em carregamento");
+            return;
+        }
+
+        PaginaEstados paginaAtual = obterPagina();
+        boolean json = querJson(request);
+        String etag = json ? paginaAtual.etagJson : paginaAtual.etagHtml;
+
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", paginaAtual.ultimaModificacao);
+        response.setHeader("Vary", "Accept");
+
+        if (naoModificado(request, etag, paginaAtual.ultimaModificacao)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] corpo = json ? paginaAtual.json : paginaAtual.html;
+        response.setContentType(json ? "application/json;charset=UTF-8" : "text/html;charset=UTF-8");
+        response.setContentLength(corpo.length);
+        response.getOutputStream().write(corpo);
+    }
+
+    private PaginaEstados obterPagina() {
+        VersaoReferencia<Estado> versao = estadoBean.consultarVersao();
+        PaginaEstados paginaAtual = this.pagina;
+        if (paginaAtual == null || paginaAtual.versao != versao.getNumero()) {
+            /*
+             * Duas threads podem renderizar a mesma versão ao mesmo tempo; o
+             * resultado é idêntico, então basta que a última escrita vença.
+             */
+            paginaAtual = new PaginaEstados(versao);
+            this.pagina = paginaAtual;
+        }
+        return paginaAtual;
+    }
+
+    private boolean querJson(HttpServletRequest request) {
+        if ("json".equals(request.getParameter("formato"))) {
+            return true;
+        }
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains("application/json") && !accept.contains("text/html");
+    }
+
+    /*
+     * If-None-Match usa comparação fraca: o FiltroCompressaoEstados envia a
+     * versão comprimida com W/"...", e o cliente devolve o ETag nessa forma.
+     */
+    private boolean naoModificado(HttpServletRequest request, String etag, long ultimaModificacao) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidata : ifNoneMatch.split(",")) {
+                candidata = candidata.trim();
+                if (candidata.startsWith("W/")) {
+                    candidata = candidata.substring(2);
+                }
+                if (candidata.equals("*") || candidata.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        return ifModifiedSince != -1 && ultimaModificacao <= ifModifiedSince;
+    }
+
+    /**
+     * Representações HTML e JSON de uma versão dos estados, já codificadas.
+     */
+    private static class PaginaEstados {
+        private final long versao;
+        private final long ultimaModificacao;
+        private final byte[] html;
+        private final byte[] json;
+        private final String etagHtml;
+        private final String etagJson;
+
+        PaginaEstados(VersaoReferencia<Estado> versao) {
+            this.versao = versao.getNumero();
+            /* Last-Modified tem precisão de segundos. */
+            this.ultimaModificacao = versao.getDataCarga() / 1000 * 1000;
+            this.html = renderizarHtml(versao.getItens());
+            this.json = renderizarJson(versao.getItens()).getBytes(StandardCharsets.UTF_8);
+            this.etagHtml = calcularEtag("html", html);
+            this.etagJson = calcularEtag("json", json);
+        }
+
+        /*
+         * O ETag é derivado do conteúdo, e não do número da versão: esse
+         * número recomeça a cada deploy, e um ETag antigo poderia coincidir
+         * com o de dados diferentes.
+         */
+        private static String calcularEtag(String formato, byte[] corpo) {
+            try {
+                byte[] resumo = MessageDigest.getInstance("SHA-256").digest(corpo);
+                return "\"estados-" + formato + "-"
+                        + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(resumo, 16)) + "\"";
+            } catch (NoSuchAlgorithmException ex) {
+                /* SHA-256 é obrigatório em toda implementação da plataforma Java. */
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        private static byte[] renderizarHtml(List<Estado> estados) {
+            ByteArrayOutputStream html = new ByteArrayOutputStream(64 * estados.size() + 256);
+            try {
+                INICIO.escrever(html);
+                for (Estado estado : estados) {
+                    ESTADO.escrever(html, estado.getSigla(), estado.getNome());
+                }
+                FIM.escrever(html);
+            } catch (IOException ex) {
+                /* ByteArrayOutputStream não lança IOException. */
+                throw new UncheckedIOException(ex);
+            }
+            return html.toByteArray();
+        }
+
+        private static String renderizarJson(List<Estado> estados) {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < estados.size(); i++) {
+                Estado estado = estados.get(i);
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"sigla\":\"").append(escaparJson(estado.getSigla()))
+                        .append("\",\"nome\":\"").append(escaparJson(estado.getNome())).append("\"}");
+            }
+            return json.append(']').toString();
+        }
+
+        private static String escaparJson(String valor) {
+            StringBuilder sb = new StringBuilder(valor.length());
+            for (char c : valor.toCharArray()) {
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
             }
-            
-            out.println("</body>");
-            out.println("</html>");
+            return sb.toString();
         }
     }
 
@@ -1,13 +1,25 @@
 package exemplo.singleton;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
 import javax.ejb.ConcurrencyManagement;
 import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Singleton;
 import javax.ejb.LocalBean;
+import javax.enterprise.concurrent.ManagedExecutorService;
 
 /**
+ * Coordena as tarefas de aquecimento da aplicação. Cada tarefa é executada em
+ * paralelo no ManagedExecutorService do container, de modo que uma leitura
+ * lenta do banco não segura a thread de deploy. O tempo gasto por tarefa fica
+ * registrado no log e pode ser consultado em consultarTemposAquecimento().
  *
  * @author MASC
  */
@@ -15,8 +27,48 @@ import javax.ejb.LocalBean;
 @LocalBean
 @ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class ConfiguradorBean {
+    @Resource
+    private ManagedExecutorService executor;
+    /*
+     * Tempo, em milissegundos, de cada tarefa de aquecimento já concluída.
+     */
+    private final Map<String, Long> temposAquecimento = new LinkedHashMap<>();
+
     @PostConstruct
     public synchronized void inicializar() {
         Logger.getGlobal().info("Realizando alguma tarefa de inicialização do sistema...");
     }
+
+    /**
+     * Agenda uma tarefa de aquecimento e retorna imediatamente.
+     *
+     * @param nome nome usado no log e no relatório de tempos.
+     * @param tarefa trabalho a executar em segundo plano.
+     * @return Future que indica o término da tarefa.
+     */
+    public Future<?> aquecer(final String nome, final Runnable tarefa) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                long inicio = System.nanoTime();
+                try {
+                    tarefa.run();
+                } catch (RuntimeException ex) {
+                    Logger.getGlobal().log(Level.SEVERE, "Falha no aquecimento de " + nome, ex);
+                    throw ex;
+                } finally {
+                    registrarTempo(nome, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+                }
+            }
+        });
+    }
+
+    public synchronized Map<String, Long> consultarTemposAquecimento() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(temposAquecimento));
+    }
+
+    private synchronized void registrarTempo(String nome, long milissegundos) {
+        temposAquecimento.put(nome, milissegundos);
+        Logger.getGlobal().log(Level.INFO, "Aquecimento de {0} concluído em {1} ms", new Object[]{nome, milissegundos});
+    }
 }
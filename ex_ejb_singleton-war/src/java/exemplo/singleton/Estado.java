@@ -1,28 +1,36 @@
 package exemplo.singleton;
 
+import referencia.ItemReferencia;
+
 /**
+ * Estado imutável: as instâncias ficam no snapshot compartilhado do
+ * CacheReferencia e são entregues diretamente a quem usa o EstadoBeanLocal.
  *
  * @author MASC
  */
-public class Estado {
-    private String sigla;
-    private String nome;
+public final class Estado implements ItemReferencia {
+    private final String sigla;
+    private final String nome;
 
-    public String getSigla() {
+    public Estado(String sigla, String nome) {
+        this.sigla = sigla;
+        this.nome = nome;
+    }
+
+    /**
+     * A sigla é o código do estado na tabela de referência.
+     */
+    @Override
+    public String getCodigo() {
         return sigla;
     }
 
-    public void setSigla(String sigla) {
-        this.sigla = sigla;
+    public String getSigla() {
+        return sigla;
     }
 
+    @Override
     public String getNome() {
         return nome;
     }
-
-    public void setNome(String nome) {
-        this.nome = nome;
-    }
-    
-    
 }
@@ -1,108 +1,166 @@
 package exemplo.singleton;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
-import javax.ejb.AccessTimeout;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
 import javax.ejb.ConcurrencyManagement;
 import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.DependsOn;
-import javax.ejb.Lock;
-import javax.ejb.LockType;
+import javax.ejb.EJB;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
 import javax.sql.DataSource;
+import referencia.CacheReferencia;
+import referencia.FonteJdbc;
+import referencia.Mapeador;
+import referencia.VersaoReferencia;
 
 /**
  * @Startup: O bean será instanciado quando a aplicação inicializar.
  * @DependsOn("ConfiguradorBean"): EstadoBean depende de ConfiguradorBean.
- * Em outras palavras, ConfiguradorBean deverá ser instanciado e inicializado 
+ * Em outras palavras, ConfiguradorBean deverá ser instanciado e inicializado
  * antes de EstadoBean.
+ *
+ * A leitura inicial de tb_estado não é feita na thread de deploy: ela é
+ * entregue ao ConfiguradorBean como tarefa de aquecimento. Enquanto ela não
+ * termina, o bean fica no estado "aquecendo" (isAquecido() devolve false) e
+ * as consultas recebem a versão 0, vazia, em vez de ficarem bloqueadas.
+ *
+ * O snapshot, os índices e o modelo de recarga ficam no CacheReferencia,
+ * compartilhado com as demais tabelas de referência.
  */
 @Singleton
 @Startup
 @DependsOn("ConfiguradorBean")
 /*
- * @ConcurrencyManagement(ConcurrencyManagementType.CONTAINER)
- * é o valor default para gerenciamento de concorrência.
+ * @ConcurrencyManagement(ConcurrencyManagementType.BEAN): o próprio bean
+ * controla a concorrência. Não há bloqueio de leitura/escrita do container;
+ * as leituras acessam um snapshot imutável publicado por uma referência
+ * volatile, e a recarga monta uma nova lista antes de substituí-la.
  */
-@ConcurrencyManagement(ConcurrencyManagementType.CONTAINER)
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class EstadoBean implements EstadoBeanLocal {
     @Resource(lookup = "jdbc/__default")
     private DataSource dataSource;
-    private List<Estado> estados = new ArrayList<>();
-
-    @PostConstruct
+    @Resource
+    private TimerService timerService;
+    @EJB
+    private ConfiguradorBean configurador;
     /*
-     * @AccessTimeout(unit = TimeUnit.SECONDS, value = 10) indica que uma
-     * thread só ficará bloqueada esperando a execução deste método por, no
-     * máximo, a quantidade de tempo especificada.
+     * Intervalo, em minutos, entre as verificações de alteração em tb_estado.
+     * Pode ser alterado no deploy por meio da env-entry "intervaloRecargaEstados".
      */
-    @AccessTimeout(unit = TimeUnit.SECONDS, value = 10)
-    @Lock(LockType.WRITE)
+    @Resource(name = "intervaloRecargaEstados")
+    private Integer intervaloRecarga = 5;
     /*
-     * Se você não especificar, @Lock(LockType.WRITE) é o valor default.
-     * Assim, por padrão, todos os métodos de um bean singleton são synchronized.
+     * Coluna de tb_estado com a data de alteração de cada linha, informada
+     * pela env-entry "colunaAtualizacaoEstados" nos bancos que a possuem.
+     * Sem ela, o marcador de alteração considera apenas a quantidade de linhas.
      */
+    @Resource(name = "colunaAtualizacaoEstados")
+    private String colunaAtualizacao;
+    private CacheReferencia<Estado> cache;
+
+    @PostConstruct
     public void inicializar() {
-        lerEstados();
+        cache = new CacheReferencia<>(new FonteJdbc<>(dataSource, "tb_estado", "txt_sigla", "txt_nome", colunaAtualizacao,
+                new Mapeador<Estado>() {
+                    @Override
+                    public Estado criar(String codigo, String nome) {
+                        return new Estado(codigo, nome);
+                    }
+                }));
+        configurador.aquecer("estados", new Runnable() {
+            @Override
+            public void run() {
+                recarregar();
+            }
+        });
+        long intervalo = TimeUnit.MINUTES.toMillis(intervaloRecarga);
+        timerService.createIntervalTimer(intervalo, intervalo, new TimerConfig(null, false));
     }
 
-    private void lerEstados() {
-        Connection con = null;
-        Statement stmt = null;
-        ResultSet rs = null;    
+    /**
+     * Executado periodicamente pelo TimerService. A lista só é lida novamente
+     * quando o marcador de alteração de tb_estado mudou desde a última recarga.
+     */
+    @Timeout
+    public void verificarAlteracoes() {
         try {
-            con = dataSource.getConnection();            
-            stmt = con.createStatement();
-            rs = stmt.executeQuery("SELECT txt_sigla as sigla, txt_nome as nome FROM tb_estado ORDER BY txt_sigla");
-            while (rs.next()) {
-                Estado estado = new Estado();
-                estado.setSigla(rs.getString(1));
-                estado.setNome(rs.getString(2));
-                estados.add(estado);
-            }
-        } catch (SQLException ex) {
-            throw new RuntimeException(ex.getMessage(), ex);
-        } finally {
-            fecharRecursos(rs, stmt, con);
+            cache.verificarAlteracoes();
+        } catch (RuntimeException ex) {
+            Logger.getLogger(EstadoBean.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
         }
     }
 
+    /**
+     * Solicita uma recarga imediata em segundo plano. Quem chama não espera a
+     * leitura da tabela; as consultas continuam usando o snapshot anterior até
+     * a troca.
+     */
     @Override
-    @Lock(LockType.READ)
+    @Asynchronous
+    public Future<Boolean> solicitarRecarga() {
+        try {
+            recarregar();
+            return new AsyncResult<>(true);
+        } catch (RuntimeException ex) {
+            Logger.getLogger(EstadoBean.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
+            return new AsyncResult<>(false);
+        }
+    }
+
+    /**
+     * Lê novamente a tabela tb_estado e substitui o snapshot atual de uma só
+     * vez. As recargas são serializadas entre si, mas nunca bloqueiam as
+     * consultas, que continuam lendo o snapshot anterior até a troca.
+     */
+    @Override
+    public void recarregar() {
+        cache.recarregar();
+    }
+
     /**
-     * Este método pode ser acessado concorrentemente enquanto nenhuma thread
-     * mantém um bloqueio de escrita no bean.
+     * Este método pode ser acessado concorrentemente sem nenhum bloqueio: ele
+     * apenas devolve o snapshot imutável publicado pela última recarga.
      */
+    @Override
     public List<Estado> consultarEstados() {
-        return this.estados;
+        return cache.consultarVersao().getItens();
     }
-    
-    private void fecharRecursos(ResultSet rs, Statement stmt, Connection con) throws RuntimeException {
-        try {
-            if (rs != null) {
-                rs.close();
-            }
-            
-            if (stmt != null) {
-                stmt.close();
-            }
-            
-            if (con != null) {
-                con.close();
-            }
-        } catch (SQLException ex) {
-            throw new RuntimeException(ex.getMessage(), ex);
-        }
+
+    /**
+     * Indica se a primeira carga de tb_estado já terminou.
+     */
+    @Override
+    public boolean isAquecido() {
+        return cache.isAquecido();
     }
 
+    /**
+     * Devolve o snapshot atual junto com seu número de versão e data de carga.
+     */
+    @Override
+    public VersaoReferencia<Estado> consultarVersao() {
+        return cache.consultarVersao();
+    }
 
+    @Override
+    public Estado porSigla(String sigla) {
+        return cache.consultarVersao().porCodigo(sigla);
+    }
 
+    @Override
+    public List<Estado> porPrefixoNome(String prefixo) {
+        return cache.consultarVersao().porPrefixoNome(prefixo);
+    }
 }
@@ -6,7 +6,9 @@
 package exemplo.singleton;
 
 import java.util.List;
+import java.util.concurrent.Future;
 import javax.ejb.Local;
+import referencia.VersaoReferencia;
 
 /**
  *
@@ -15,4 +17,10 @@ import javax.ejb.Local;
 @Local
 public interface EstadoBeanLocal {
     public List<Estado> consultarEstados();
+    public boolean isAquecido();
+    public VersaoReferencia<Estado> consultarVersao();
+    public Estado porSigla(String sigla);
+    public List<Estado> porPrefixoNome(String prefixo);
+    public void recarregar();
+    public Future<Boolean> solicitarRecarga();
 }
@@ -0,0 +1,38 @@
+package exemplo.jpa;
+
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sequencing.Sequence;
+import org.eclipse.persistence.sequencing.TableSequence;
+import org.eclipse.persistence.sessions.DatabaseLogin;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Substitui as sequências em tabela declaradas com @TableGenerator por
+ * SequenciaBlocos, mantendo tabela, colunas e valor inicial.
+ *
+ * Habilitado pela propriedade "eclipselink.session.customizer" do
+ * persistence.xml. O tamanho do bloco e a quantidade de faixas podem ser
+ * alterados pelas propriedades de sistema "exemplo.sequencia.tamanhoBloco" e
+ * "exemplo.sequencia.faixas".
+ */
+public class ConfiguradorSequencia implements SessionCustomizer {
+
+    static int lerTamanhoBloco() {
+        return Integer.getInteger("exemplo.sequencia.tamanhoBloco", 1000);
+    }
+
+    @Override
+    public void customize(Session session) throws Exception {
+        int tamanhoBloco = lerTamanhoBloco();
+        int faixas = Integer.getInteger("exemplo.sequencia.faixas", Runtime.getRuntime().availableProcessors());
+        DatabaseLogin login = session.getLogin();
+
+        for (Object valor : login.getSequences().values().toArray()) {
+            Sequence sequencia = (Sequence) valor;
+
+            if (sequencia.getClass() == TableSequence.class) {
+                login.addSequence(new SequenciaBlocos((TableSequence) sequencia, tamanhoBloco, faixas, session));
+            }
+        }
+    }
+}
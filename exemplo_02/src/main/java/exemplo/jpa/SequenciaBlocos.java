@@ -0,0 +1,170 @@
+package exemplo.jpa;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.persistence.exceptions.DatabaseException;
+import org.eclipse.persistence.internal.databaseaccess.Accessor;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.sequencing.TableSequence;
+import org.eclipse.persistence.sessions.DatabaseLogin;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Sequência em tabela que distribui os ids em memória, sem ida ao banco a
+ * cada inserção.
+ *
+ * Na TableSequence padrão, a linha de TB_GERADOR_ID é atualizada dentro da
+ * transação de quem está inserindo, e o bloqueio da linha só é liberado no
+ * commit: inserções concorrentes ficam enfileiradas nessa linha. Aqui cada
+ * faixa reserva um bloco grande de ids em uma transação curta, em uma conexão
+ * própria, e depois entrega os ids do bloco com um AtomicLong. As threads são
+ * distribuídas entre as faixas, de modo que a reserva de um bloco novo só
+ * bloqueia as threads da mesma faixa.
+ *
+ * Como continua sendo uma TableSequence, a geração de DDL do EclipseLink
+ * continua criando TB_GERADOR_ID e a sua linha inicial. Os ids deixam de ser
+ * crescentes entre faixas, mas continuam únicos, inclusive entre várias JVMs
+ * usando a mesma tabela.
+ */
+public class SequenciaBlocos extends TableSequence {
+
+    private transient Faixa[] faixas;
+    private transient DatabaseLogin login;
+    private transient Session sessao;
+
+    public SequenciaBlocos(TableSequence original, int tamanhoBloco, int quantidadeFaixas, Session sessao) {
+        super(original.getName(), tamanhoBloco, original.getTableName(), original.getNameFieldName(),
+                original.getCounterFieldName());
+        setInitialValue(original.getInitialValue());
+        if (tamanhoBloco < 1 || quantidadeFaixas < 1) {
+            throw new IllegalArgumentException("Tamanho de bloco e quantidade de faixas devem ser positivos.");
+        }
+        this.faixas = new Faixa[quantidadeFaixas];
+        for (int i = 0; i < faixas.length; i++) {
+            faixas[i] = new Faixa();
+        }
+        this.login = sessao.getLogin();
+        this.sessao = sessao;
+    }
+
+    /*
+     * Sem pré-alocação do EclipseLink: o SequencingManager pede um valor por
+     * vez e fora da transação da inserção, pois os blocos são mantidos aqui.
+     */
+    @Override
+    public boolean shouldUsePreallocation() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldUseTransaction() {
+        return false;
+    }
+
+    @Override
+    public boolean shouldAcquireValueAfterInsert() {
+        return false;
+    }
+
+    @Override
+    public Object getGeneratedValue(Accessor accessor, AbstractSession writeSession, String seqName) {
+        Faixa faixa = faixas[(int) (Thread.currentThread().getId() % faixas.length)];
+
+        while (true) {
+            Bloco bloco = faixa.atual;
+            long id = bloco.proximo.getAndIncrement();
+
+            if (id <= bloco.ultimo) {
+                return id;
+            }
+
+            synchronized (faixa) {
+                //Outra thread da mesma faixa pode ter reservado o bloco enquanto esta esperava.
+                if (faixa.atual == bloco) {
+                    faixa.atual = reservarBloco(seqName);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Vector getGeneratedVector(Accessor accessor, AbstractSession writeSession, String seqName, int size) {
+        return null;
+    }
+
+    /**
+     * Avança o contador de TB_GERADOR_ID em getPreallocationSize() valores e
+     * devolve o intervalo reservado. A transação contém apenas o UPDATE e o
+     * SELECT, e o bloqueio da linha dura só esse tempo.
+     */
+    private Bloco reservarBloco(String seqName) {
+        int tamanho = getPreallocationSize();
+        String update = "UPDATE " + getQualifiedTableName() + " SET " + getCounterFieldName() + " = "
+                + getCounterFieldName() + " + ? WHERE " + getNameFieldName() + " = ?";
+        String select = "SELECT " + getCounterFieldName() + " FROM " + getQualifiedTableName()
+                + " WHERE " + getNameFieldName() + " = ?";
+        String insert = "INSERT INTO " + getQualifiedTableName() + " (" + getNameFieldName() + ", "
+                + getCounterFieldName() + ") VALUES (?, ?)";
+
+        try (Connection conexao = (Connection) login.connectToDatasource(null, sessao)) {
+            conexao.setAutoCommit(false);
+
+            try {
+                long ultimo;
+
+                try (PreparedStatement ps = conexao.prepareStatement(update)) {
+                    ps.setInt(1, tamanho);
+                    ps.setString(2, seqName);
+
+                    if (ps.executeUpdate() == 0) {
+                        //Linha ainda não criada pela geração de DDL.
+                        ultimo = getInitialValue() - 1L + tamanho;
+
+                        try (PreparedStatement psInsert = conexao.prepareStatement(insert)) {
+                            psInsert.setString(1, seqName);
+                            psInsert.setLong(2, ultimo);
+                            psInsert.executeUpdate();
+                        }
+                    } else {
+                        try (PreparedStatement psSelect = conexao.prepareStatement(select)) {
+                            psSelect.setString(1, seqName);
+
+                            try (ResultSet rs = psSelect.executeQuery()) {
+                                rs.next();
+                                ultimo = rs.getLong(1);
+                            }
+                        }
+                    }
+                }
+
+                conexao.commit();
+                return new Bloco(ultimo - tamanho + 1, ultimo);
+            } catch (SQLException ex) {
+                conexao.rollback();
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            throw DatabaseException.sqlException(ex);
+        }
+    }
+
+    private static final class Faixa {
+
+        private volatile Bloco atual = new Bloco(1, 0);
+    }
+
+    private static final class Bloco {
+
+        private final AtomicLong proximo;
+        private final long ultimo;
+
+        private Bloco(long primeiro, long ultimo) {
+            this.proximo = new AtomicLong(primeiro);
+            this.ultimo = ultimo;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package exemplo.jpa;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sequencing.TableSequence;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Mede quantas inserções de Usuario por segundo 64 threads conseguem fazer,
+ * primeiro com a TableSequence padrão e depois com SequenciaBlocos. As duas
+ * medições reservam ids no mesmo tamanho de bloco
+ * ("exemplo.sequencia.tamanhoBloco", padrão 1000), para que a diferença
+ * venha só da forma de reservar e distribuir os ids.
+ *
+ * Cada execução recria as tabelas (ddl-generation da persistence-unit).
+ * Quantidade de threads e de inserções por thread podem ser alteradas pelas
+ * propriedades de sistema "teste.threads" e "teste.insercoes".
+ */
+public class TesteConcorrencia {
+
+    private static final int THREADS = Integer.getInteger("teste.threads", 64);
+    private static final int INSERCOES = Integer.getInteger("teste.insercoes", 200);
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> blocos = new HashMap<>();
+        //Reduz o log para que a saída não interfira na medição.
+        blocos.put(PersistenceUnitProperties.LOGGING_LEVEL, "WARNING");
+        //Substitui o ConfiguradorSequencia do persistence.xml.
+        Map<String, String> padrao = new HashMap<>(blocos);
+        padrao.put(PersistenceUnitProperties.SESSION_CUSTOMIZER, AlocacaoPadrao.class.getName());
+
+        double antes = medir("TableSequence", padrao);
+        double depois = medir("SequenciaBlocos", blocos);
+        System.out.printf("Ganho: %.1fx%n", depois / antes);
+    }
+
+    /**
+     * Mantém a TableSequence do EclipseLink, apenas com a alocação igual ao
+     * tamanho de bloco usado pelo ConfiguradorSequencia.
+     */
+    public static class AlocacaoPadrao implements SessionCustomizer {
+
+        @Override
+        public void customize(Session session) throws Exception {
+            for (Object sequencia : session.getLogin().getSequences().values()) {
+                if (sequencia instanceof TableSequence) {
+                    ((TableSequence) sequencia).setPreallocationSize(ConfiguradorSequencia.lerTamanhoBloco());
+                }
+            }
+        }
+    }
+
+    private static double medir(String descricao, Map<String, String> propriedades) throws InterruptedException {
+        final EntityManagerFactory emf = Persistence.createEntityManagerFactory("exemplo_02", propriedades);
+
+        try {
+            final CountDownLatch largada = new CountDownLatch(1);
+            final CountDownLatch chegada = new CountDownLatch(THREADS);
+            final AtomicInteger contador = new AtomicInteger();
+            final AtomicInteger falhas = new AtomicInteger();
+
+            for (int i = 0; i < THREADS; i++) {
+                Thread escritor = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            largada.await();
+
+                            for (int j = 0; j < INSERCOES; j++) {
+                                if (!inserir(emf, contador.incrementAndGet())) {
+                                    falhas.incrementAndGet();
+                                }
+                            }
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            chegada.countDown();
+                        }
+                    }
+                }, "escritor-" + i);
+                escritor.start();
+            }
+
+            long inicio = System.nanoTime();
+            largada.countDown();
+            chegada.await();
+            double segundos = (System.nanoTime() - inicio) / (double) TimeUnit.SECONDS.toNanos(1);
+            int total = THREADS * INSERCOES - falhas.get();
+            double vazao = total / segundos;
+
+            System.out.printf("%s: %d inserções em %.2f s (%.0f/s), %d falhas%n",
+                    descricao, total, segundos, vazao, falhas.get());
+            return vazao;
+        } finally {
+            emf.close();
+        }
+    }
+
+    private static boolean inserir(EntityManagerFactory emf, int numero) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction et = em.getTransaction();
+
+        try {
+            et.begin();
+            em.persist(TesteJPA.criarUsuario(numero));
+            et.commit();
+            return true;
+        } catch (RuntimeException ex) {
+            if (et.isActive()) {
+                et.rollback();
+            }
+
+            Logger.getLogger(TesteConcorrencia.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+            return false;
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -45,4 +45,28 @@ public class TesteJPA {
         c.set(Calendar.DAY_OF_MONTH, 25);
         usuario.setDataNascimento(c.getTime());
     }
+
+    /*
+     * Usuários numerados, com os demais dados de preencherUsuario, para os
+     * testes de desempenho do módulo. O CPF é fictício, apenas para respeitar
+     * a restrição de unicidade.
+     */
+    static Usuario criarUsuario(int numero) {
+        Usuario usuario = new Usuario();
+        preencherUsuario(usuario);
+        usuario.setNome("Usuario " + numero);
+        usuario.setEmail(login(numero) + "@gmail.com");
+        usuario.setLogin(login(numero));
+        usuario.setCpf(cpf(numero));
+        return usuario;
+    }
+
+    static String login(int numero) {
+        return "usuario" + numero;
+    }
+
+    static String cpf(int numero) {
+        return String.format("%03d.%03d.%03d-%02d",
+                numero / 100000000 % 1000, numero / 100000 % 1000, numero / 100 % 1000, numero % 100);
+    }
 }
@@ -22,9 +22,7 @@ public class TesteJPA {
             et.commit();
             
             em.clear(); //Força a consulta ao banco de dados, já que a classe que acabou de ser persistida está na cache.
-            UsuarioId usuarioId = new UsuarioId();
-            usuarioId.setCpf("534.585.764-49");
-            usuarioId.setLogin("fulano");
+            UsuarioId usuarioId = new UsuarioId("534.585.764-49", "fulano");
             usuario = em.find(Usuario.class, usuarioId);
             System.out.println(usuario);
 
@@ -51,5 +49,29 @@ public class TesteJPA {
         c.set(Calendar.DAY_OF_MONTH, 25);
         usuario.setDataNascimento(c.getTime());
     }
+
+    /*
+     * Usuários numerados, com os demais dados de preencherUsuario, para os
+     * testes de desempenho do módulo. O CPF é fictício, apenas para respeitar
+     * a restrição de unicidade.
+     */
+    static Usuario criarUsuario(int numero) {
+        Usuario usuario = new Usuario();
+        preencherUsuario(usuario);
+        usuario.setNome("Usuario " + numero);
+        usuario.setEmail(login(numero) + "@gmail.com");
+        usuario.setLogin(login(numero));
+        usuario.setCpf(cpf(numero));
+        return usuario;
+    }
+
+    static String login(int numero) {
+        return "usuario" + numero;
+    }
+
+    static String cpf(int numero) {
+        return String.format("%03d.%03d.%03d-%02d",
+                numero / 100000000 % 1000, numero / 100000 % 1000, numero / 100 % 1000, numero % 100);
+    }
     
 }
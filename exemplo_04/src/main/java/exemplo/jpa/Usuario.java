@@ -2,6 +2,7 @@ package exemplo.jpa;
 
 import java.io.Serializable;
 import java.util.Date;
+import java.util.Objects;
 import javax.persistence.Access;
 import javax.persistence.AccessType;
 import javax.persistence.Column;
@@ -83,7 +84,7 @@ public class Usuario implements Serializable {
     
     @Override
     public int hashCode() {
-        return cpf.hashCode() + login.hashCode();
+        return 31 * Objects.hashCode(cpf) + Objects.hashCode(login);
     }
 
     @Override
@@ -93,7 +94,7 @@ public class Usuario implements Serializable {
         } else if (getClass() != objeto.getClass()) {
             return false;
         } else {
-            return (cpf.equals(((UsuarioId)objeto).getCpf()) && login.equals(((UsuarioId)objeto).getCpf()));
+            return Objects.equals(cpf, ((Usuario)objeto).cpf) && Objects.equals(login, ((Usuario)objeto).login);
         }
     }
 
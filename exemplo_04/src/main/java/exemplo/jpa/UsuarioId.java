@@ -1,40 +1,59 @@
 package exemplo.jpa;
 
 import java.io.Serializable;
+import java.util.Objects;
 
+/*
+ * Chave imutável: sem setters, cpf e login só são atribuídos pelo construtor
+ * ou, na leitura do banco, pelo provedor JPA via reflexão. Por isso o hash
+ * pode ser calculado uma única vez e guardado, como em String.
+ */
 public class UsuarioId implements Serializable {
     private String cpf;
     private String login;
+    private transient int hash;
+
+    //Exigido pela especificação JPA.
+    public UsuarioId() {
+    }
+
+    public UsuarioId(String cpf, String login) {
+        this.cpf = cpf;
+        this.login = login;
+    }
 
     @Override
     public int hashCode() {
-        return cpf.hashCode() + login.hashCode();
+        int h = hash;
+        if (h == 0) {
+            h = 31 * Objects.hashCode(cpf) + Objects.hashCode(login);
+            hash = h;
+        }
+        return h;
     }
 
     @Override
     public boolean equals(Object objeto) {
-        if (objeto == null) {
-            return false;
-        } else if (getClass() != objeto.getClass()) {
+        if (this == objeto) {
+            return true;
+        } else if (objeto == null || getClass() != objeto.getClass()) {
             return false;
         } else {
-            return (cpf.equals(((UsuarioId)objeto).getCpf()) && login.equals(((UsuarioId)objeto).getCpf()));
+            UsuarioId outro = (UsuarioId) objeto;
+            return hashCode() == outro.hashCode() && Objects.equals(cpf, outro.cpf) && Objects.equals(login, outro.login);
         }
     }
-    
+
     public String getCpf() {
         return cpf;
     }
 
-    public void setCpf(String cpf) {
-        this.cpf = cpf;
-    }
-
     public String getLogin() {
         return login;
     }
 
-    public void setLogin(String login) {
-        this.login = login;
-    }    
+    @Override
+    public String toString() {
+        return "exemplo.jpa.UsuarioId[ cpf=" + cpf + ", login = " + login + " ]";
+    }
 }
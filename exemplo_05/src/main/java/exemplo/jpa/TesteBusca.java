@@ -0,0 +1,64 @@
+package exemplo.jpa;
+
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+/*
+ * Mede quantas buscas por chave composta (em.find) são feitas por segundo,
+ * na cache do EntityManager e na cache compartilhada do provedor. Cada busca
+ * usa uma nova instância de UsuarioId, como faria uma aplicação real.
+ */
+public class TesteBusca {
+    private static final int USUARIOS = Integer.getInteger("teste.usuarios", 1000);
+    private static final int BUSCAS = Integer.getInteger("teste.buscas", 1000000);
+
+    public static void main(String[] args) {
+        EntityManagerFactory emf = null;
+        EntityManager em = null;
+        EntityTransaction et = null;
+        try {
+            emf = Persistence.createEntityManagerFactory("exemplo_05");
+            em = emf.createEntityManager();
+            et = em.getTransaction();
+            et.begin();
+            for (int i = 0; i < USUARIOS; i++) {
+                em.persist(TesteJPA.criarUsuario(i));
+            }
+            et.commit();
+
+            //Entidades gerenciadas pelo EntityManager: cache de primeiro nível.
+            medir("Cache do EntityManager", em);
+
+            //Entidades desanexadas: a busca passa pela cache compartilhada.
+            em.close();
+            em = emf.createEntityManager();
+            medir("Cache compartilhada", em);
+        } catch (Exception ex) {
+            if (et != null && et.isActive())
+                et.rollback();
+            ex.printStackTrace();
+        } finally {
+            if (em != null)
+                em.close();
+            if (emf != null)
+                emf.close();
+        }
+    }
+
+    private static void medir(String descricao, EntityManager em) {
+        int encontrados = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < BUSCAS; i++) {
+            int numero = i % USUARIOS;
+            if (em.find(Usuario.class, new UsuarioId(TesteJPA.cpf(numero), TesteJPA.login(numero))) != null) {
+                encontrados++;
+            }
+        }
+        double segundos = (System.nanoTime() - inicio) / (double) TimeUnit.SECONDS.toNanos(1);
+        System.out.printf("%s: %d buscas em %.2f s (%.0f/s), %d encontradas%n",
+                descricao, BUSCAS, segundos, BUSCAS / segundos, encontrados);
+    }
+}
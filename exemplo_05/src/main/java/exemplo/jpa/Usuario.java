@@ -36,7 +36,7 @@ public class Usuario implements Serializable {
     }
 
     public void setCpf(String cpf) {
-        this.id.setCpf(cpf);
+        this.id = new UsuarioId(cpf, id.getLogin());
     }
 
     public String getNome() {
@@ -52,7 +52,7 @@ public class Usuario implements Serializable {
     }
 
     public void setLogin(String login) {
-        this.id.setLogin(login);
+        this.id = new UsuarioId(id.getCpf(), login);
     }
 
     public String getEmail() {
@@ -1,45 +1,65 @@
 package exemplo.jpa;
 
 import java.io.Serializable;
+import java.util.Objects;
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
 
+/*
+ * Chave imutável: sem setters, cpf e login só são atribuídos pelo construtor
+ * ou, na leitura do banco, pelo provedor JPA via reflexão. Usuario troca a
+ * chave inteira ao alterar cpf ou login. Por isso o hash pode ser calculado
+ * uma única vez e guardado, como em String.
+ */
 @Embeddable
 public class UsuarioId implements Serializable {
     @Column(name = "TXT_CPF", nullable = false, length = 14, unique = true)
     private String cpf;
-    @Column(name = "TXT_LOGIN", nullable = false, length = 50, unique = true)    
+    @Column(name = "TXT_LOGIN", nullable = false, length = 50, unique = true)
     private String login;
+    private transient int hash;
+
+    //Exigido pela especificação JPA.
+    public UsuarioId() {
+    }
+
+    public UsuarioId(String cpf, String login) {
+        this.cpf = cpf;
+        this.login = login;
+    }
 
     @Override
     public int hashCode() {
-        return cpf.hashCode() + login.hashCode();
+        int h = hash;
+        if (h == 0) {
+            h = 31 * Objects.hashCode(cpf) + Objects.hashCode(login);
+            hash = h;
+        }
+        return h;
     }
 
     @Override
     public boolean equals(Object objeto) {
-        if (objeto == null) {
-            return false;
-        } else if (getClass() != objeto.getClass()) {
+        if (this == objeto) {
+            return true;
+        } else if (objeto == null || getClass() != objeto.getClass()) {
             return false;
         } else {
-            return (cpf.equals(((UsuarioId)objeto).getCpf()) && login.equals(((UsuarioId)objeto).getCpf()));
+            UsuarioId outro = (UsuarioId) objeto;
+            return hashCode() == outro.hashCode() && Objects.equals(cpf, outro.cpf) && Objects.equals(login, outro.login);
         }
     }
-    
+
     public String getCpf() {
         return cpf;
     }
 
-    public void setCpf(String cpf) {
-        this.cpf = cpf;
-    }
-
     public String getLogin() {
         return login;
     }
 
-    public void setLogin(String login) {
-        this.login = login;
-    }    
+    @Override
+    public String toString() {
+        return "exemplo.jpa.UsuarioId[ cpf=" + cpf + ", login = " + login + " ]";
+    }
 }
@@ -0,0 +1,39 @@
+package exemplo.jpa;
+
+import javax.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+
+/*
+ * A lista de filhas é o lado inverso de Categoria.mae e fica na cache de
+ * segundo nível. Alterar apenas a mãe não remove essa lista da cache, e
+ * alterar a lista dispararia o orphanRemoval. Por isso, ao mover uma
+ * categoria, as listas da mãe antiga e da nova são removidas explicitamente
+ * da região Categoria.filhas. Uma leitura concorrente entre a remoção e o
+ * commit pode recolocar a lista antiga na cache; o tempo de vida da região
+ * (ehcache.xml) limita esse caso.
+ */
+public final class ArvoreCategorias {
+
+    private static final String REGIAO_FILHAS = Categoria.class.getName() + ".filhas";
+
+    private ArvoreCategorias() {
+    }
+
+    /**
+     * Move a categoria para debaixo de novaMae (null a torna uma raiz). Deve
+     * ser chamado dentro de uma transação; a alteração é gravada no commit.
+     */
+    public static void mover(EntityManager em, Categoria categoria, Categoria novaMae) {
+        Categoria antiga = categoria.getMae();
+        categoria.setMae(novaMae);
+        em.flush();
+
+        org.hibernate.Cache cache = em.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+        if (antiga != null) {
+            cache.evictCollection(REGIAO_FILHAS, antiga.getId());
+        }
+        if (novaMae != null) {
+            cache.evictCollection(REGIAO_FILHAS, novaMae.getId());
+        }
+    }
+}
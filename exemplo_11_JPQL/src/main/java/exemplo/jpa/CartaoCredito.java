@@ -16,7 +16,7 @@ import javax.persistence.TemporalType;
 @Table(name = "TB_CARTAO_CREDITO")
 public class CartaoCredito implements Serializable {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)    
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "GERADOR_CARTAO_CREDITO")
     private Long id;  
     @OneToOne(mappedBy = "cartaoCredito", optional = false)
     private Comprador dono;
@@ -2,6 +2,7 @@ package exemplo.jpa;
 
 import java.io.Serializable;
 import java.util.List;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.ColumnResult;
 import javax.persistence.Entity;
@@ -13,18 +14,31 @@ import javax.persistence.ManyToOne;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.QueryHint;
 import javax.persistence.SqlResultSetMapping;
 import javax.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.NamedNativeQueries;
 import org.hibernate.annotations.NamedNativeQuery;
+import org.hibernate.annotations.QueryHints;
 
 @Entity
 @Table(name = "TB_CATEGORIA")
+/*
+ * Categorias são lidas o tempo todo e raramente alteradas: ficam na cache de
+ * segundo nível. NONSTRICT_READ_WRITE não bloqueia as leituras; uma alteração
+ * apenas remove a entrada da cache após o commit.
+ */
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @NamedQueries(
         {
             @NamedQuery(
                     name = "Categoria.PorNome",
-                    query = "SELECT c FROM Categoria c WHERE c.nome LIKE :nome ORDER BY c.id"
+                    query = "SELECT c FROM Categoria c WHERE c.nome LIKE :nome ORDER BY c.id",
+                    //Resultado guardado na cache de consultas, invalidado por alterações em TB_CATEGORIA.
+                    hints = {@QueryHint(name = QueryHints.CACHEABLE, value = "true")}
             )
         }
 )
@@ -38,6 +52,7 @@ import org.hibernate.annotations.NamedNativeQuery;
             @NamedNativeQuery(
                     name = "Categoria.QuantidadeItensSQL",
                     query = "SELECT c.ID, c.TXT_NOME, c.ID_CATEGORIA_MAE, count(ic.ID_ITEM) as total_itens from tb_categoria c, tb_itens_categorias ic where c.TXT_NOME LIKE ? and c.ID = ic.ID_CATEGORIA GROUP BY c.id",
+                    //Cacheável apenas quando criada por ConsultasNomeadas.criar.
                     resultSetMapping = "Categoria.QuantidadeItens"
             )
         }
@@ -59,6 +74,7 @@ public class Categoria implements Serializable {
     @JoinColumn(name = "ID_CATEGORIA_MAE", referencedColumnName = "ID")
     private Categoria mae;
     @OneToMany(mappedBy = "mae", orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE) //Guarda os ids das filhas.
     private List<Categoria> filhas;
 
     public Long getId() {
@@ -73,6 +89,12 @@ public class Categoria implements Serializable {
         return mae;
     }
 
+    /*
+     * Altera apenas o lado dono da associação. Não mexa em filhas aqui: com
+     * orphanRemoval, retirar a categoria da lista da mãe antiga faria o
+     * Hibernate apagá-la. Para mover uma categoria mantendo a cache de filhas
+     * correta, use ArvoreCategorias.mover.
+     */
     public void setMae(Categoria mae) {
         this.mae = mae;
     }
@@ -0,0 +1,49 @@
+package exemplo.jpa;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.annotations.QueryHints;
+
+/*
+ * O Hibernate invalida um resultado da cache de consultas quando alguma das
+ * tabelas da consulta (query spaces) é alterada. Em JPQL essas tabelas são
+ * deduzidas das entidades; em SQL nativo, apenas as tabelas das entidades do
+ * resultado são conhecidas, e @NamedNativeQuery não permite declarar as
+ * demais. Por isso as consultas nativas não são marcadas como cacheáveis na
+ * anotação: só a consulta criada por aqui recebe a dica de cache, junto com
+ * todas as tabelas que invalidam o resultado.
+ */
+public final class ConsultasNomeadas {
+
+    private static final Map<String, String[]> TABELAS;
+
+    static {
+        Map<String, String[]> tabelas = new HashMap<>();
+        tabelas.put("Categoria.QuantidadeItensSQL", new String[]{"TB_CATEGORIA", "TB_ITENS_CATEGORIAS"});
+        TABELAS = Collections.unmodifiableMap(tabelas);
+    }
+
+    private ConsultasNomeadas() {
+    }
+
+    public static Query criar(EntityManager em, String nome) {
+        Query query = em.createNamedQuery(nome);
+        String[] tabelas = TABELAS.get(nome);
+
+        if (tabelas != null) {
+            SQLQuery sqlQuery = query.unwrap(SQLQuery.class);
+
+            for (String tabela : tabelas) {
+                sqlQuery.addSynchronizedQuerySpace(tabela);
+            }
+
+            query.setHint(QueryHints.CACHEABLE, true);
+        }
+
+        return query;
+    }
+}
@@ -22,7 +22,7 @@ import javax.persistence.Table;
 public class Item implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "GERADOR_ITEM")
     private Long id;
     @OneToMany(mappedBy = "item", fetch = FetchType.LAZY,
             cascade = CascadeType.ALL, orphanRemoval = true)
@@ -18,7 +18,7 @@ import javax.persistence.TemporalType;
 @Table(name = "TB_OFERTA")
 public class Oferta implements Serializable {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "GERADOR_OFERTA")
     private Long id;
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "ID_ITEM", referencedColumnName = "ID")
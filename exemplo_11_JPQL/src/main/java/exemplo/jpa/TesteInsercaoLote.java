@@ -0,0 +1,112 @@
+package exemplo.jpa;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.AvailableSettings;
+import org.hibernate.stat.Statistics;
+
+/*
+ * Insere 100.000 ofertas, em lotes do tamanho de hibernate.jdbc.batch_size
+ * (lido da persistence-unit), primeiro com o id de Oferta gerado por
+ * IDENTITY (oferta-identity.xml) e depois com a tabela de sequências de
+ * geradores.xml. Cada execução recria as tabelas (drop-and-create da
+ * persistence-unit).
+ * A quantidade pode ser alterada pela propriedade de sistema "teste.ofertas".
+ */
+public class TesteInsercaoLote {
+    private static final int OFERTAS = Integer.getInteger("teste.ofertas", 100000);
+
+    public static void main(String[] args) {
+        Map<String, String> tabela = new HashMap<>();
+        tabela.put("hibernate.show_sql", "false"); //Evita 100.000 linhas de log durante a medição.
+        Map<String, String> identidade = new HashMap<>(tabela);
+        identidade.put(AvailableSettings.XML_FILE_NAMES, "META-INF/oferta-identity.xml");
+
+        medir("IDENTITY", identidade);
+        medir("TABLE (pooled)", tabela);
+    }
+
+    private static void medir(String descricao, Map<String, String> propriedades) {
+        EntityManagerFactory emf = null;
+        EntityManager em = null;
+        EntityTransaction et = null;
+        try {
+            emf = Persistence.createEntityManagerFactory("exemplo_11", propriedades);
+            em = emf.createEntityManager();
+            et = em.getTransaction();
+            et.begin();
+            Vendedor vendedor = new Vendedor();
+            preencherUsuario(vendedor, "vendedor", "111.111.111-11");
+            vendedor.setReputacao(Reputacao.NOVATO);
+            em.persist(vendedor);
+            Item item = new Item();
+            item.setTitulo("Flauta Doce");
+            item.setDescricao("Flauta Doce Usada");
+            item.setVendedor(vendedor);
+            em.persist(item);
+            Comprador comprador = new Comprador();
+            preencherUsuario(comprador, "comprador", "222.222.222-22");
+            em.persist(comprador);
+            et.commit();
+            em.clear();
+
+            int lote = Integer.parseInt(String.valueOf(emf.getProperties().get("hibernate.jdbc.batch_size")));
+            Statistics estatisticas = emf.unwrap(SessionFactory.class).getStatistics();
+            estatisticas.clear();
+            long inicio = System.nanoTime();
+            et.begin();
+            for (int i = 0; i < OFERTAS; i++) {
+                Oferta oferta = new Oferta();
+                oferta.setItem(item);
+                oferta.setComprador(comprador);
+                oferta.setValor(100.0 + i);
+                oferta.setData(new Date());
+                oferta.setVencedora(false);
+                em.persist(oferta);
+
+                if ((i + 1) % lote == 0) {
+                    //Envia o lote e libera a memória do contexto de persistência.
+                    em.flush();
+                    em.clear();
+                }
+            }
+            et.commit();
+            long duracao = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+            System.out.printf("%s: %d ofertas em %d ms (%.0f/s), %d comandos preparados%n",
+                    descricao, OFERTAS, duracao, OFERTAS * 1000.0 / duracao,
+                    estatisticas.getPrepareStatementCount());
+        } catch (Exception ex) {
+            if (et != null && et.isActive())
+                et.rollback();
+            ex.printStackTrace();
+        } finally {
+            if (em != null)
+                em.close();
+            if (emf != null)
+                emf.close();
+        }
+    }
+
+    private static void preencherUsuario(Usuario usuario, String login, String cpf) {
+        usuario.setLogin(login);
+        usuario.setCpf(cpf);
+        usuario.setNome("Usuario " + login);
+        usuario.setEmail(login + "@gmail.com");
+        usuario.setSenha("teste");
+        Endereco endereco = new Endereco();
+        endereco.setLogradouro("Rua Ribeirão");
+        endereco.setBairro("Iputinga");
+        endereco.setNumero(20);
+        endereco.setCep("50670-210");
+        endereco.setCidade("Recife");
+        endereco.setEstado("Pernambuco");
+        usuario.setEndereco(endereco);
+    }
+}
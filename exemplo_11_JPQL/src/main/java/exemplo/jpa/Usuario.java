@@ -6,6 +6,7 @@ import java.util.Date;
 import java.util.HashSet;
 import javax.persistence.Access;
 import javax.persistence.AccessType;
+import javax.persistence.Cacheable;
 import javax.persistence.CollectionTable;
 import javax.persistence.Column;
 import javax.persistence.DiscriminatorColumn;
@@ -22,6 +23,8 @@ import javax.persistence.JoinColumn;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "TB_USUARIO")
@@ -29,9 +32,16 @@ import javax.persistence.TemporalType;
 @DiscriminatorColumn(name = "DISC_USUARIO", //Nome da coluna que vai discriminar subclasses.
         discriminatorType = DiscriminatorType.STRING, length = 1)
 @Access(AccessType.FIELD)
+/*
+ * O Hibernate mantém uma única região de cache por hierarquia, definida na
+ * raiz: é por aqui que Vendedor (e sua reputação) entra na cache.
+ */
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public abstract class Usuario implements Serializable {
+    //Tabela de sequências (pooled) em vez de IDENTITY, para permitir inserções em lote (META-INF/geradores.xml).
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "GERADOR_USUARIO")
     protected Long id;
     @Embedded
     protected Endereco endereco;
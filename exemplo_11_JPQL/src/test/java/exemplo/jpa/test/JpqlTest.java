@@ -1,8 +1,10 @@
 package exemplo.jpa.test;
 
+import exemplo.jpa.ArvoreCategorias;
 import exemplo.jpa.CartaoCredito;
 import exemplo.jpa.Categoria;
 import exemplo.jpa.Comprador;
+import exemplo.jpa.ConsultasNomeadas;
 import exemplo.jpa.DatasLimite;
 import exemplo.jpa.Item;
 import exemplo.jpa.Oferta;
@@ -10,17 +12,22 @@ import exemplo.jpa.Reputacao;
 import exemplo.jpa.Usuario;
 import exemplo.jpa.Vendedor;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.persistence.CacheRetrieveMode;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -39,6 +46,7 @@ public class JpqlTest {
 
     private static EntityManagerFactory emf;
     private static final Logger logger = Logger.getGlobal();
+    private static final int LEITURAS_ARVORE = 1000;
     private EntityManager em;
     private EntityTransaction et;
 
@@ -527,4 +535,278 @@ public class JpqlTest {
         assertNull(oferta);
         logger.log(Level.INFO, "Oferta {0} removida com sucesso.", id);  
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void t32_categoriaVendedorCacheSegundoNivel() {
+        logger.info("Executando t32: em.find(Categoria.class, ...) e em.find(Vendedor.class, ...) na cache de segundo nível");
+        emf.getCache().evict(Categoria.class);
+        emf.getCache().evict(Usuario.class);
+        Statistics estatisticas = getEstatisticas();
+        estatisticas.clear();
+        em.find(Categoria.class, new Long(2));
+        em.find(Vendedor.class, new Long(6));
+        assertEquals(2, estatisticas.getSecondLevelCacheMissCount());
+        assertTrue(emf.getCache().contains(Categoria.class, new Long(2)));
+        assertTrue(emf.getCache().contains(Vendedor.class, new Long(6)));
+
+        EntityManager outro = emf.createEntityManager();
+        try {
+            Categoria categoria = outro.find(Categoria.class, new Long(2));
+            Vendedor vendedor = outro.find(Vendedor.class, new Long(6));
+            assertEquals("Guitarras", categoria.getNome());
+            assertNotNull(vendedor.getReputacao());
+        } finally {
+            outro.close();
+        }
+
+        assertEquals(2, estatisticas.getSecondLevelCacheHitCount());
+        assertEquals(2, estatisticas.getSecondLevelCacheMissCount());
+    }
+
+    /*
+     * Lê a árvore de categorias LEITURAS_ARVORE vezes, cada vez com um novo
+     * EntityManager: primeiro ignorando a cache de segundo nível
+     * (CacheRetrieveMode.BYPASS), como referência, e depois usando-a.
+     */
+    @Test
+    public void t33_arvoreCategoriasCache() {
+        logger.info("Executando t33: leituras repetidas da árvore de categorias");
+        Statistics estatisticas = getEstatisticas();
+
+        estatisticas.clear();
+        long semCache = lerArvoreCategorias(CacheRetrieveMode.BYPASS);
+        long consultasSemCache = estatisticas.getPrepareStatementCount();
+        assertEquals(0, estatisticas.getSecondLevelCacheHitCount());
+
+        emf.getCache().evict(Categoria.class);
+        estatisticas.clear();
+        long comCache = lerArvoreCategorias(CacheRetrieveMode.USE);
+        long consultasComCache = estatisticas.getPrepareStatementCount();
+        long acertos = estatisticas.getSecondLevelCacheHitCount();
+        long faltas = estatisticas.getSecondLevelCacheMissCount();
+
+        logger.log(Level.INFO, "{0} leituras da árvore sem cache: {1} ms, {2} consultas SQL",
+                new Object[]{LEITURAS_ARVORE, semCache, consultasSemCache});
+        logger.log(Level.INFO, "{0} leituras da árvore com cache: {1} ms, {2} consultas SQL; {3} acertos, {4} faltas",
+                new Object[]{LEITURAS_ARVORE, comCache, consultasComCache, acertos, faltas});
+        assertTrue(acertos > faltas);
+        assertTrue(consultasComCache < consultasSemCache);
+    }
+
+    @Test
+    public void t34_categoriaPorNomeCacheConsulta() {
+        logger.info("Executando t34: Categoria.PorNome na cache de consultas");
+        //t02 já executou a mesma consulta com o mesmo parâmetro.
+        emf.unwrap(SessionFactory.class).getCache().evictDefaultQueryRegion();
+        Statistics estatisticas = getEstatisticas();
+        estatisticas.clear();
+        List<String> primeira = consultarNomesCategorias("Instrumentos%");
+        List<String> segunda = consultarNomesCategorias("Instrumentos%");
+        assertEquals(primeira, segunda);
+        assertEquals(1, estatisticas.getQueryCacheMissCount());
+        assertEquals(1, estatisticas.getQueryCacheHitCount());
+    }
+
+    @Test
+    public void t35_categoriaPorNomeAposAlteracao() {
+        logger.info("Executando t35: Categoria.PorNome após alterar TB_CATEGORIA");
+        List<String> antes = consultarNomesCategorias("Instrumentos%");
+        assertFalse(antes.contains("Instrumentos de Efeito"));
+        renomearCategoria(new Long(3), "Instrumentos de Efeito");
+
+        try {
+            List<String> depois = consultarNomesCategorias("Instrumentos%");
+            assertEquals(antes.size() + 1, depois.size());
+            assertTrue(depois.contains("Instrumentos de Efeito"));
+        } finally {
+            renomearCategoria(new Long(3), "Pedais");
+        }
+
+        assertEquals(antes, consultarNomesCategorias("Instrumentos%"));
+    }
+
+    @Test
+    public void t36_quantidadeItensCacheConsulta() {
+        logger.info("Executando t36: Categoria.QuantidadeItensSQL na cache de consultas");
+        //A primeira execução não deve encontrar resultado deixado por outro teste.
+        emf.unwrap(SessionFactory.class).getCache().evictDefaultQueryRegion();
+        Statistics estatisticas = getEstatisticas();
+        estatisticas.clear();
+        Long primeira = consultarQuantidadeItens("Instrumentos Musicais");
+        Long segunda = consultarQuantidadeItens("Instrumentos Musicais");
+        assertEquals(primeira, segunda);
+        assertEquals(1, estatisticas.getQueryCacheMissCount());
+        assertEquals(1, estatisticas.getQueryCacheHitCount());
+    }
+
+    @Test
+    public void t37_quantidadeItensAposAlteracao() {
+        logger.info("Executando t37: Categoria.QuantidadeItensSQL após alterar TB_ITENS_CATEGORIAS");
+        Long antes = consultarQuantidadeItens("Instrumentos Musicais");
+        alterarCategoriaItem(new Long(3), new Long(1), false);
+
+        try {
+            assertEquals(new Long(antes - 1), consultarQuantidadeItens("Instrumentos Musicais"));
+        } finally {
+            alterarCategoriaItem(new Long(3), new Long(1), true);
+        }
+
+        assertEquals(antes, consultarQuantidadeItens("Instrumentos Musicais"));
+    }
+
+    @Test
+    public void t38_moverCategoria() {
+        logger.info("Executando t38: mover categoria com a lista de filhas na cache");
+        //Coloca na cache as listas de filhas das duas mães.
+        assertTrue(idsFilhas(new Long(1)).contains(new Long(3)));
+        assertFalse(idsFilhas(new Long(2)).contains(new Long(3)));
+        moverCategoria(new Long(3), new Long(2));
+
+        try {
+            EntityManager outro = emf.createEntityManager();
+            try {
+                Categoria pedais = outro.find(Categoria.class, new Long(3));
+                assertNotNull(pedais);
+                assertEquals(new Long(2), pedais.getMae().getId());
+            } finally {
+                outro.close();
+            }
+
+            assertTrue(idsFilhas(new Long(2)).contains(new Long(3)));
+            assertFalse(idsFilhas(new Long(1)).contains(new Long(3)));
+        } finally {
+            moverCategoria(new Long(3), new Long(1));
+        }
+
+        assertTrue(idsFilhas(new Long(1)).contains(new Long(3)));
+        assertFalse(idsFilhas(new Long(2)).contains(new Long(3)));
+    }
+
+    private List<String> consultarNomesCategorias(String nome) {
+        EntityManager outro = emf.createEntityManager();
+        try {
+            TypedQuery<Categoria> query = outro.createNamedQuery("Categoria.PorNome", Categoria.class);
+            query.setParameter("nome", nome);
+            List<String> nomes = new ArrayList<>();
+
+            for (Categoria categoria : query.getResultList()) {
+                nomes.add(categoria.getNome());
+            }
+
+            return nomes;
+        } finally {
+            outro.close();
+        }
+    }
+
+    private Long consultarQuantidadeItens(String nome) {
+        EntityManager outro = emf.createEntityManager();
+        try {
+            Query query = ConsultasNomeadas.criar(outro, "Categoria.QuantidadeItensSQL");
+            query.setParameter(1, nome);
+            Object[] resultado = (Object[]) query.getSingleResult();
+            return (Long) resultado[1];
+        } finally {
+            outro.close();
+        }
+    }
+
+    private void renomearCategoria(Long id, String nome) {
+        EntityManager outro = emf.createEntityManager();
+        EntityTransaction transacao = outro.getTransaction();
+        try {
+            transacao.begin();
+            outro.find(Categoria.class, id).setNome(nome);
+            transacao.commit();
+        } finally {
+            if (transacao.isActive()) {
+                transacao.rollback();
+            }
+            outro.close();
+        }
+    }
+
+    private void moverCategoria(Long id, Long idNovaMae) {
+        EntityManager outro = emf.createEntityManager();
+        EntityTransaction transacao = outro.getTransaction();
+        try {
+            transacao.begin();
+            ArvoreCategorias.mover(outro, outro.find(Categoria.class, id), outro.find(Categoria.class, idNovaMae));
+            transacao.commit();
+        } finally {
+            if (transacao.isActive()) {
+                transacao.rollback();
+            }
+            outro.close();
+        }
+    }
+
+    private List<Long> idsFilhas(Long id) {
+        EntityManager outro = emf.createEntityManager();
+        try {
+            List<Long> ids = new ArrayList<>();
+
+            for (Categoria filha : outro.find(Categoria.class, id).getFilhas()) {
+                ids.add(filha.getId());
+            }
+
+            return ids;
+        } finally {
+            outro.close();
+        }
+    }
+
+    private void alterarCategoriaItem(Long idItem, Long idCategoria, boolean adicionar) {
+        EntityManager outro = emf.createEntityManager();
+        EntityTransaction transacao = outro.getTransaction();
+        try {
+            transacao.begin();
+            Item item = outro.find(Item.class, idItem);
+            Categoria categoria = outro.find(Categoria.class, idCategoria);
+
+            if (adicionar) {
+                item.adicionar(categoria);
+            } else {
+                item.getCategorias().remove(categoria);
+            }
+
+            transacao.commit();
+        } finally {
+            if (transacao.isActive()) {
+                transacao.rollback();
+            }
+            outro.close();
+        }
+    }
+
+    /*
+     * Devolve o tempo, em milissegundos, das leituras da árvore.
+     */
+    private long lerArvoreCategorias(CacheRetrieveMode modo) {
+        long inicio = System.nanoTime();
+        for (int i = 0; i < LEITURAS_ARVORE; i++) {
+            EntityManager outro = emf.createEntityManager();
+            try {
+                outro.setProperty("javax.persistence.cache.retrieveMode", modo);
+                assertEquals(4, contarCategorias(outro.find(Categoria.class, new Long(1))));
+            } finally {
+                outro.close();
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+    }
+
+    private int contarCategorias(Categoria categoria) {
+        int total = 1;
+
+        for (Categoria filha : categoria.getFilhas()) {
+            total += contarCategorias(filha);
+        }
+
+        return total;
+    }
+
+    private static Statistics getEstatisticas() {
+        return emf.unwrap(SessionFactory.class).getStatistics();
+    }
+}
@@ -21,7 +21,7 @@ import org.hibernate.validator.constraints.NotBlank;
 @Table(name = "TB_CARTAO_CREDITO")
 public class CartaoCredito implements Serializable {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)    
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "GERADOR_CARTAO_CREDITO")
     private Long id;
     @NotNull
     @OneToOne(mappedBy = "cartaoCredito", optional = false)
@@ -25,7 +25,7 @@ import org.hibernate.validator.constraints.NotBlank;
 public class Item implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "GERADOR_ITEM")
     private Long id;
     @OneToMany(mappedBy = "item", fetch = FetchType.LAZY,
             cascade = CascadeType.ALL, orphanRemoval = true)
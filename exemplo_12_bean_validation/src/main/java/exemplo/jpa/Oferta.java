@@ -22,7 +22,7 @@ import javax.validation.constraints.NotNull;
 @Table(name = "TB_OFERTA")
 public class Oferta implements Serializable {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "GERADOR_OFERTA")
     private Long id;
     @NotNull
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -39,8 +39,9 @@ import org.hibernate.validator.constraints.br.CPF;
         discriminatorType = DiscriminatorType.STRING, length = 1)
 @Access(AccessType.FIELD)
 public abstract class Usuario implements Serializable {
+    //Tabela de sequências (pooled) em vez de IDENTITY, para permitir inserções em lote (META-INF/geradores.xml).
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "GERADOR_USUARIO")
     protected Long id;
     @Valid
     @Embedded
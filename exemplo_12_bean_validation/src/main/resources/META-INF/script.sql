@@ -41,6 +41,7 @@
     drop table if exists TB_CARTAO_CREDITO;
     drop table if exists TB_CATEGORIA;
     drop table if exists TB_COMPRADOR;
+    drop table if exists TB_GERADOR_ID;
     drop table if exists TB_ITEM;
     drop table if exists TB_ITENS_CATEGORIAS;
     drop table if exists TB_OFERTA;
@@ -49,7 +50,7 @@
     drop table if exists TB_VENDEDOR;
 
     create table TB_CARTAO_CREDITO (
-        id bigint not null auto_increment,
+        id bigint not null,
         TXT_BANDEIRA varchar(15) not null,
         DT_EXPIRACAO date not null,
         TXT_NUMERO varchar(30) not null,
@@ -69,8 +70,14 @@
         primary key (ID_USUARIO)
     );
 
+    create table TB_GERADOR_ID (
+        NM_SEQUENCIA varchar(255) not null,
+        ID_SEQUENCIA bigint,
+        primary key (NM_SEQUENCIA)
+    );
+
     create table TB_ITEM (
-        id bigint not null auto_increment,
+        id bigint not null,
         TXT_DESCRICAO varchar(500) not null,
         TXT_TITULO varchar(150) not null,
         ID_VENDEDOR bigint not null,
@@ -84,7 +91,7 @@
     );
 
     create table TB_OFERTA (
-        id bigint not null auto_increment,
+        id bigint not null,
         DT_OFERTA datetime not null,
         NUM_VALOR double precision not null,
         FLAG_VENCEDORA bit not null,
@@ -100,7 +107,7 @@
 
     create table TB_USUARIO (
         DISC_USUARIO varchar(1) not null,
-        id bigint not null auto_increment,
+        id bigint not null,
         TXT_CPF varchar(14) not null,
         DT_CRIACAO datetime,
         DT_NASCIMENTO date,
@@ -0,0 +1,256 @@
+package carga;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import localizador.LocalizadorRemoto;
+
+/**
+ * Gerador de carga para qualquer interface @Remote.
+ *
+ * Uso:
+ * <pre>
+ * java -cp gerador_carga.jar:localizador_remoto.jar:gf-client.jar:&lt;jar da interface&gt; \
+ *      -Dcarga.threads=16 -Dcarga.segundos=30 -Dcarga.aquecimento=5 \
+ *      carga.GeradorCarga java:global/ejbtest/HelloBean!test.HelloRemote test.HelloRemote hello Masc
+ * </pre>
+ *
+ * Os argumentos após o nome do método são passados como String ao método
+ * remoto. Cada thread chama o bean em laço durante o tempo configurado; as
+ * chamadas feitas durante o aquecimento não entram nas estatísticas. Se
+ * carga.jndi apontar para um arquivo de propriedades, ele é usado para criar
+ * o InitialContext; caso contrário valem as propriedades padrão (por
+ * exemplo, o jndi.properties do classpath).
+ *
+ * Todas as threads usam o mesmo stub, portanto o alvo deve ser um bean
+ * stateless ou singleton.
+ *
+ * As falhas das chamadas são apenas contadas por tipo de exceção; ao fim da
+ * execução é registrado um único aviso com as contagens e a pilha da
+ * primeira falha.
+ *
+ * @author MASC
+ */
+public class GeradorCarga {
+    private final Object alvo;
+    private final Method metodo;
+    private final Object[] argumentos;
+    private final int threads;
+    private final long aquecimento;
+    private final long duracao;
+
+    /**
+     * @param aquecimento tempo inicial, em milissegundos, não medido.
+     * @param duracao tempo medido, em milissegundos.
+     */
+    public GeradorCarga(Object alvo, Method metodo, Object[] argumentos, int threads, long aquecimento, long duracao) {
+        this.alvo = alvo;
+        this.metodo = metodo;
+        this.argumentos = argumentos.clone();
+        this.threads = threads;
+        this.aquecimento = aquecimento;
+        this.duracao = duracao;
+    }
+
+    public Resultado executar() throws InterruptedException {
+        final CountDownLatch largada = new CountDownLatch(1);
+        final long inicioMedicao = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(aquecimento);
+        final long fim = inicioMedicao + TimeUnit.MILLISECONDS.toNanos(duracao);
+        List<Chamador> chamadores = new ArrayList<>(threads);
+        List<Thread> trabalhadoras = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Chamador chamador = new Chamador(largada, inicioMedicao, fim);
+            Thread thread = new Thread(chamador, "carga-" + i);
+            chamadores.add(chamador);
+            trabalhadoras.add(thread);
+            thread.start();
+        }
+        largada.countDown();
+        for (Thread thread : trabalhadoras) {
+            thread.join();
+        }
+
+        HistogramaLatencia latencias = new HistogramaLatencia();
+        long erros = 0;
+        Map<String, Long> falhas = new TreeMap<>();
+        Throwable primeiraFalha = null;
+        for (Chamador chamador : chamadores) {
+            latencias.somar(chamador.latencias);
+            erros += chamador.erros;
+            for (Map.Entry<String, Long> falha : chamador.falhas.entrySet()) {
+                Long total = falhas.get(falha.getKey());
+                falhas.put(falha.getKey(), total == null ? falha.getValue() : total + falha.getValue());
+            }
+            if (primeiraFalha == null) {
+                primeiraFalha = chamador.primeiraFalha;
+            }
+        }
+        if (!falhas.isEmpty()) {
+            Logger.getLogger(GeradorCarga.class.getName()).log(Level.WARNING,
+                    "Falhas por tipo, incluindo o aquecimento: " + falhas, primeiraFalha);
+        }
+        return new Resultado(latencias, erros, duracao);
+    }
+
+    private class Chamador implements Runnable {
+        private final CountDownLatch largada;
+        private final long inicioMedicao;
+        private final long fim;
+        private final HistogramaLatencia latencias = new HistogramaLatencia();
+        private final Map<String, Long> falhas = new TreeMap<>();
+        private Throwable primeiraFalha;
+        private long erros;
+
+        Chamador(CountDownLatch largada, long inicioMedicao, long fim) {
+            this.largada = largada;
+            this.inicioMedicao = inicioMedicao;
+            this.fim = fim;
+        }
+
+        @Override
+        public void run() {
+            try {
+                largada.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long agora = System.nanoTime();
+            while (agora < fim) {
+                boolean sucesso = chamar();
+                long depois = System.nanoTime();
+                if (agora >= inicioMedicao) {
+                    if (sucesso) {
+                        latencias.gravar(TimeUnit.NANOSECONDS.toMicros(depois - agora));
+                    } else {
+                        erros++;
+                    }
+                }
+                agora = depois;
+            }
+        }
+
+        private boolean chamar() {
+            try {
+                metodo.invoke(alvo, argumentos);
+                return true;
+            } catch (InvocationTargetException ex) {
+                Throwable causa = ex.getCause();
+                if (primeiraFalha == null) {
+                    primeiraFalha = causa;
+                }
+                Long total = falhas.get(causa.getClass().getName());
+                falhas.put(causa.getClass().getName(), total == null ? 1 : total + 1);
+                return false;
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    public static class Resultado {
+        private final HistogramaLatencia latencias;
+        private final long erros;
+        private final long duracao;
+
+        Resultado(HistogramaLatencia latencias, long erros, long duracao) {
+            this.latencias = latencias;
+            this.erros = erros;
+            this.duracao = duracao;
+        }
+
+        public HistogramaLatencia getLatencias() {
+            return latencias;
+        }
+
+        public long getErros() {
+            return erros;
+        }
+
+        /**
+         * @return chamadas bem-sucedidas por segundo no período medido.
+         */
+        public double getVazao() {
+            return latencias.getTotal() * 1000.0 / duracao;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder relatorio = new StringBuilder();
+            relatorio.append(String.format("Chamadas: %d  Erros: %d  Vazão: %.1f chamadas/s%n",
+                    latencias.getTotal(), erros, getVazao()));
+            relatorio.append(String.format("Latência (µs): mín %d  média %.1f  máx %d%n",
+                    latencias.getMinimo(), latencias.getMedia(), latencias.getMaximo()));
+            for (String percentil : new String[]{"50", "90", "99", "99.9", "99.99"}) {
+                relatorio.append(String.format("  p%-6s %d%n", percentil, latencias.percentil(Double.parseDouble(percentil))));
+            }
+            return relatorio.toString();
+        }
+    }
+
+    /**
+     * @param args nome JNDI, interface remota, método e argumentos do método.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Uso: GeradorCarga <nome JNDI> <interface> <método> [argumentos...]");
+            System.exit(1);
+        }
+        Class<?> interfaceRemota = Class.forName(args[1]);
+        Object[] argumentos = Arrays.copyOfRange(args, 3, args.length);
+        Method metodo = localizarMetodo(interfaceRemota, args[2], argumentos.length);
+        Object alvo = LocalizadorRemoto.para(lerAmbiente()).localizar(args[0], interfaceRemota);
+
+        int threads = Integer.getInteger("carga.threads", 8);
+        int aquecimento = Integer.getInteger("carga.aquecimento", 5);
+        int segundos = Integer.getInteger("carga.segundos", 30);
+        System.out.println(String.format("%s.%s: %d threads, %ds de aquecimento, %ds medidos",
+                interfaceRemota.getSimpleName(), metodo.getName(), threads, aquecimento, segundos));
+        GeradorCarga gerador = new GeradorCarga(alvo, metodo, argumentos, threads,
+                TimeUnit.SECONDS.toMillis(aquecimento), TimeUnit.SECONDS.toMillis(segundos));
+        System.out.print(gerador.executar());
+    }
+
+    private static Method localizarMetodo(Class<?> interfaceRemota, String nome, int quantidade) {
+        for (Method metodo : interfaceRemota.getMethods()) {
+            if (metodo.getName().equals(nome) && metodo.getParameterTypes().length == quantidade
+                    && apenasString(metodo.getParameterTypes())) {
+                return metodo;
+            }
+        }
+        throw new IllegalArgumentException(String.format("%s não tem o método %s com %d parâmetros String",
+                interfaceRemota.getName(), nome, quantidade));
+    }
+
+    private static boolean apenasString(Class<?>[] tipos) {
+        for (Class<?> tipo : tipos) {
+            if (tipo != String.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Properties lerAmbiente() throws IOException {
+        Properties ambiente = new Properties();
+        String arquivo = System.getProperty("carga.jndi");
+        if (arquivo != null) {
+            try (InputStream entrada = new FileInputStream(arquivo)) {
+                ambiente.load(entrada);
+            }
+        }
+        return ambiente;
+    }
+}
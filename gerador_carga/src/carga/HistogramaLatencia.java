@@ -0,0 +1,103 @@
+package carga;
+
+/**
+ * Histograma de latências com precisão relativa fixa, no estilo do
+ * HdrHistogram: os valores (em microssegundos) são agrupados em faixas de
+ * potência de 2, e cada faixa é dividida em SUBFAIXAS partes iguais. Com 128
+ * subfaixas o erro de qualquer percentil fica abaixo de 1%, e gravar um valor
+ * custa apenas alguns deslocamentos de bits, sem alocação.
+ *
+ * Não é thread-safe: cada thread chamadora grava no seu próprio histograma e
+ * os histogramas são somados ao final com somar().
+ *
+ * @author MASC
+ */
+public class HistogramaLatencia {
+    private static final int BITS_SUBFAIXA = 7;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+    private static final int FAIXAS = 64 - BITS_SUBFAIXA;
+
+    private final long[] contagens = new long[(FAIXAS + 1) * SUBFAIXAS];
+    private long total;
+    private long minimo = Long.MAX_VALUE;
+    private long maximo;
+    private double soma;
+
+    public void gravar(long micros) {
+        long valor = Math.max(0, micros);
+        contagens[indice(valor)]++;
+        total++;
+        soma += valor;
+        minimo = Math.min(minimo, valor);
+        maximo = Math.max(maximo, valor);
+    }
+
+    public void somar(HistogramaLatencia outro) {
+        for (int i = 0; i < contagens.length; i++) {
+            contagens[i] += outro.contagens[i];
+        }
+        total += outro.total;
+        soma += outro.soma;
+        minimo = Math.min(minimo, outro.minimo);
+        maximo = Math.max(maximo, outro.maximo);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMinimo() {
+        return total == 0 ? 0 : minimo;
+    }
+
+    public long getMaximo() {
+        return maximo;
+    }
+
+    public double getMedia() {
+        return total == 0 ? 0 : soma / total;
+    }
+
+    /**
+     * @param percentil valor entre 0 e 100.
+     * @return o limite superior da subfaixa que contém o percentil, limitado
+     * ao maior valor gravado.
+     */
+    public long percentil(double percentil) {
+        if (total == 0) {
+            return 0;
+        }
+        long alvo = Math.max(1, (long) Math.ceil(total * percentil / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < contagens.length; i++) {
+            acumulado += contagens[i];
+            if (acumulado >= alvo) {
+                return Math.min(limiteSuperior(i), maximo);
+            }
+        }
+        return maximo;
+    }
+
+    /*
+     * Valores menores que SUBFAIXAS ficam na faixa 0, um por posição. A
+     * partir daí, a faixa é dada pelo bit mais significativo e a subfaixa
+     * pelos BITS_SUBFAIXA bits seguintes.
+     */
+    private static int indice(long valor) {
+        if (valor < SUBFAIXAS) {
+            return (int) valor;
+        }
+        int faixa = 64 - Long.numberOfLeadingZeros(valor) - BITS_SUBFAIXA;
+        int subfaixa = (int) (valor >>> (faixa - 1)) & (SUBFAIXAS - 1);
+        return faixa * SUBFAIXAS + subfaixa;
+    }
+
+    private static long limiteSuperior(int indice) {
+        int faixa = indice / SUBFAIXAS;
+        int subfaixa = indice % SUBFAIXAS;
+        if (faixa == 0) {
+            return subfaixa;
+        }
+        return (((long) (SUBFAIXAS | subfaixa) + 1) << (faixa - 1)) - 1;
+    }
+}
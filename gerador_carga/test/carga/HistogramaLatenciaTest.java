@@ -0,0 +1,181 @@
+package carga;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes dos percentis do HistogramaLatencia, comparados com os percentis
+ * exatos calculados sobre os valores ordenados.
+ *
+ * @author MASC
+ */
+public class HistogramaLatenciaTest {
+    private static final double[] PERCENTIS = {0, 1, 10, 25, 50, 75, 90, 95, 99, 99.9, 100};
+
+    @Test
+    public void histogramaVazio() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        assertEquals(0, histograma.getTotal());
+        assertEquals(0, histograma.getMinimo());
+        assertEquals(0, histograma.getMaximo());
+        assertEquals(0, histograma.getMedia(), 0);
+        assertEquals(0, histograma.percentil(99));
+    }
+
+    /*
+     * Abaixo de 128 us cada valor tem a sua própria subfaixa: os percentis
+     * são exatos.
+     */
+    @Test
+    public void valoresPequenosSaoExatos() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        for (int i = 1; i <= 100; i++) {
+            histograma.gravar(i);
+        }
+        assertEquals(1, histograma.percentil(0));
+        assertEquals(50, histograma.percentil(50));
+        assertEquals(99, histograma.percentil(99));
+        assertEquals(100, histograma.percentil(100));
+        assertEquals(1, histograma.getMinimo());
+        assertEquals(100, histograma.getMaximo());
+        assertEquals(50.5, histograma.getMedia(), 1e-9);
+    }
+
+    @Test
+    public void valoresNegativosContamComoZero() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        histograma.gravar(-5);
+        assertEquals(0, histograma.getMinimo());
+        assertEquals(0, histograma.percentil(100));
+    }
+
+    /*
+     * Nas faixas a partir de 256 us, cada subfaixa agrupa 2^(faixa-1)
+     * valores, e o percentil é o limite superior da subfaixa, nunca maior que
+     * o máximo gravado.
+     */
+    @Test
+    public void percentisNosLimitesDasSubfaixas() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        histograma.gravar(127);
+        histograma.gravar(128);
+        assertEquals(127, histograma.percentil(50));
+        assertEquals(128, histograma.percentil(100));
+
+        //256 e 257 ficam na mesma subfaixa; 258 abre a seguinte.
+        histograma = new HistogramaLatencia();
+        histograma.gravar(256);
+        assertEquals(256, histograma.percentil(100));
+        histograma.gravar(257);
+        histograma.gravar(258);
+        histograma.gravar(1000);
+        assertEquals(257, histograma.percentil(25));
+        assertEquals(257, histograma.percentil(50));
+        assertEquals(259, histograma.percentil(75));
+        assertEquals(1000, histograma.percentil(100));
+
+        //Último valor de uma faixa e primeiro da seguinte.
+        histograma = new HistogramaLatencia();
+        histograma.gravar(255);
+        histograma.gravar(256);
+        assertEquals(255, histograma.percentil(50));
+        assertEquals(256, histograma.percentil(100));
+    }
+
+    /*
+     * O maior valor possível cai na última subfaixa sem estourar o vetor.
+     */
+    @Test
+    public void maiorValorPossivel() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        histograma.gravar(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histograma.percentil(100));
+    }
+
+    @Test
+    public void erroRelativoAbaixoDeUmPorCento() {
+        Random aleatorio = new Random(42);
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        long[] valores = new long[100000];
+        for (int i = 0; i < valores.length; i++) {
+            //Distribuição com cauda longa, de microssegundos a minutos.
+            valores[i] = (long) Math.exp(aleatorio.nextDouble() * Math.log(60000000));
+            histograma.gravar(valores[i]);
+        }
+        Arrays.sort(valores);
+
+        for (double percentil : PERCENTIS) {
+            long exato = exato(valores, percentil);
+            long aproximado = histograma.percentil(percentil);
+            assertTrue(percentil + ": " + aproximado + " < " + exato, aproximado >= exato);
+            assertTrue(percentil + ": " + aproximado + " x " + exato, aproximado - exato <= exato / 100);
+        }
+    }
+
+    /*
+     * Cada thread grava no seu próprio histograma, como os Chamadores do
+     * GeradorCarga; a soma deve ser igual a um único histograma com todos os
+     * valores.
+     */
+    @Test
+    public void somaDeHistogramasDeVariasThreads() throws Exception {
+        final int threads = 8;
+        final int valoresPorThread = 50000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<HistogramaLatencia>> parciais = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final long semente = t;
+                parciais.add(executor.submit(new Callable<HistogramaLatencia>() {
+                    @Override
+                    public HistogramaLatencia call() {
+                        HistogramaLatencia parcial = new HistogramaLatencia();
+                        Random aleatorio = new Random(semente);
+                        for (int i = 0; i < valoresPorThread; i++) {
+                            parcial.gravar(aleatorio.nextInt(1000000));
+                        }
+                        return parcial;
+                    }
+                }));
+            }
+
+            HistogramaLatencia soma = new HistogramaLatencia();
+            //Um histograma vazio não altera o mínimo.
+            soma.somar(new HistogramaLatencia());
+            for (Future<HistogramaLatencia> parcial : parciais) {
+                soma.somar(parcial.get());
+            }
+
+            HistogramaLatencia unico = new HistogramaLatencia();
+            for (int t = 0; t < threads; t++) {
+                Random aleatorio = new Random(t);
+                for (int i = 0; i < valoresPorThread; i++) {
+                    unico.gravar(aleatorio.nextInt(1000000));
+                }
+            }
+
+            assertEquals(unico.getTotal(), soma.getTotal());
+            assertEquals(unico.getMinimo(), soma.getMinimo());
+            assertEquals(unico.getMaximo(), soma.getMaximo());
+            assertEquals(unico.getMedia(), soma.getMedia(), 1e-6);
+            for (double percentil : PERCENTIS) {
+                assertEquals(String.valueOf(percentil), unico.percentil(percentil), soma.percentil(percentil));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long exato(long[] ordenados, double percentil) {
+        int posicao = (int) Math.max(1, Math.ceil(ordenados.length * percentil / 100.0));
+        return ordenados[posicao - 1];
+    }
+}
@@ -0,0 +1,220 @@
+package localizador;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.NoSuchObjectException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.NoSuchEJBException;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import org.omg.CORBA.CompletionStatus;
+import org.omg.CORBA.SystemException;
+
+/**
+ * Localizador de beans remotos compartilhado pelos clientes.
+ *
+ * Criar um InitialContext com as propriedades do ORB e fazer o lookup custa
+ * caro (inicialização do ORB e ida ao servidor de nomes). Aqui o contexto é
+ * criado uma única vez por conjunto de propriedades e cada stub é guardado
+ * pelo seu nome JNDI. Todos os métodos podem ser chamados por várias threads.
+ *
+ * Os objetos devolvidos por localizar() descartam o stub e fazem o lookup
+ * novamente quando o servidor deixa de reconhecê-lo (por exemplo, após um
+ * redeploy ou reinício). A chamada só é repetida quando se sabe que ela não
+ * chegou a ser executada no servidor.
+ *
+ * localizar() só serve para beans stateless e singleton: o stub guardado é
+ * compartilhado por todos que pedem o mesmo nome. Cada lookup de um bean
+ * stateful cria uma nova instância (uma nova conversa) no servidor, então
+ * esses beans devem ser obtidos com localizarStateful(), que sempre faz o
+ * lookup e não guarda nem substitui o stub.
+ *
+ * @author MASC
+ */
+public class LocalizadorRemoto {
+    private static final ConcurrentMap<Properties, LocalizadorRemoto> LOCALIZADORES = new ConcurrentHashMap<>();
+
+    private final Properties ambiente;
+    private final ConcurrentMap<String, Object> stubs = new ConcurrentHashMap<>();
+    private volatile Context contexto;
+
+    private LocalizadorRemoto(Properties ambiente) {
+        this.ambiente = ambiente;
+    }
+
+    /**
+     * Devolve o localizador compartilhado para as propriedades informadas.
+     */
+    public static LocalizadorRemoto para(Properties ambiente) {
+        Properties copia = new Properties();
+        copia.putAll(ambiente);
+        LocalizadorRemoto localizador = LOCALIZADORES.get(copia);
+        if (localizador == null) {
+            LocalizadorRemoto novo = new LocalizadorRemoto(copia);
+            localizador = LOCALIZADORES.putIfAbsent(copia, novo);
+            if (localizador == null) {
+                localizador = novo;
+            }
+        }
+        return localizador;
+    }
+
+    /**
+     * Devolve o localizador compartilhado para as propriedades de um arquivo
+     * do classpath (por exemplo, jndi.properties), relativo à classe base.
+     */
+    public static LocalizadorRemoto para(Class<?> base, String recurso) {
+        try (InputStream entrada = base.getResourceAsStream(recurso)) {
+            if (entrada == null) {
+                throw new IllegalArgumentException("Recurso não encontrado: " + recurso);
+            }
+            Properties propriedades = new Properties();
+            propriedades.load(entrada);
+            return para(propriedades);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Devolve o bean remoto stateless ou singleton publicado com o nome JNDI
+     * informado. O stub é compartilhado; veja localizarStateful() para beans
+     * stateful.
+     */
+    public <T> T localizar(final String nome, final Class<T> tipo) throws NamingException {
+        resolver(nome, tipo);
+        Object proxy = Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+                if (metodo.getDeclaringClass() == Object.class) {
+                    return invocarObject(proxy, metodo, args, nome);
+                }
+                try {
+                    return invocar(resolver(nome, tipo), metodo, args);
+                } catch (Throwable ex) {
+                    if (!podeRepetir(ex)) {
+                        throw ex;
+                    }
+                    Logger.getLogger(LocalizadorRemoto.class.getName()).log(Level.INFO,
+                            "Stub de {0} descartado: {1}", new Object[]{nome, ex.toString()});
+                    invalidar(nome);
+                    return invocar(resolver(nome, tipo), metodo, args);
+                }
+            }
+        });
+        return tipo.cast(proxy);
+    }
+
+    /**
+     * Cria uma nova instância do bean stateful publicado com o nome JNDI
+     * informado. Apenas o contexto é reaproveitado: o stub não é guardado, e
+     * as chamadas não são repetidas com outro stub, pois uma nova instância
+     * não teria o estado da conversa.
+     */
+    public <T> T localizarStateful(String nome, Class<T> tipo) throws NamingException {
+        return tipo.cast(lookup(nome));
+    }
+
+    /**
+     * Descarta o stub guardado para o nome informado. O próximo uso fará um
+     * novo lookup.
+     */
+    public void invalidar(String nome) {
+        stubs.remove(nome);
+    }
+
+    private Object resolver(String nome, Class<?> tipo) throws NamingException {
+        Object stub = stubs.get(nome);
+        if (stub == null) {
+            stub = tipo.cast(lookup(nome));
+            Object existente = stubs.putIfAbsent(nome, stub);
+            if (existente != null) {
+                stub = existente;
+            }
+        }
+        return stub;
+    }
+
+    /*
+     * Se o lookup falhar, o contexto pode estar associado a um ORB que não
+     * responde mais; ele é descartado e o lookup é tentado com um novo.
+     */
+    private Object lookup(String nome) throws NamingException {
+        Context atual = obterContexto();
+        try {
+            return atual.lookup(nome);
+        } catch (NamingException ex) {
+            descartarContexto(atual);
+            return obterContexto().lookup(nome);
+        }
+    }
+
+    private Context obterContexto() throws NamingException {
+        Context atual = contexto;
+        if (atual == null) {
+            synchronized (this) {
+                atual = contexto;
+                if (atual == null) {
+                    atual = new InitialContext(ambiente);
+                    contexto = atual;
+                }
+            }
+        }
+        return atual;
+    }
+
+    private synchronized void descartarContexto(Context atual) {
+        if (contexto == atual) {
+            contexto = null;
+            try {
+                atual.close();
+            } catch (NamingException ex) {
+                Logger.getLogger(LocalizadorRemoto.class.getName()).log(Level.FINE, ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private static Object invocar(Object stub, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(stub, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /*
+     * Só é seguro repetir quando a chamada certamente não foi executada: o
+     * bean não existe mais no servidor ou o ORB informa COMPLETED_NO.
+     */
+    private static boolean podeRepetir(Throwable ex) {
+        for (Throwable causa = ex; causa != null; causa = causa.getCause()) {
+            if (causa instanceof NoSuchEJBException || causa instanceof NoSuchObjectException) {
+                return true;
+            }
+            if (causa instanceof SystemException) {
+                return ((SystemException) causa).completed == CompletionStatus.COMPLETED_NO;
+            }
+        }
+        return false;
+    }
+
+    private static Object invocarObject(Object proxy, Method metodo, Object[] args, String nome) {
+        switch (metodo.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "LocalizadorRemoto[" + nome + "]";
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package localizador;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.NoSuchObjectException;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.spi.InitialContextFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.omg.CORBA.COMM_FAILURE;
+import org.omg.CORBA.CompletionStatus;
+import org.omg.CORBA.TRANSIENT;
+import static org.junit.Assert.*;
+
+/**
+ * Testes do LocalizadorRemoto com um servidor de nomes simulado: o
+ * InitialContext é criado pela Fabrica abaixo, indicada em
+ * java.naming.factory.initial, e cada teste usa o seu próprio Servidor.
+ *
+ * @author MASC
+ */
+public class LocalizadorRemotoTest {
+    private static final String NOME = "java:global/teste/ContadorBean";
+    private static final Map<String, Servidor> SERVIDORES = new ConcurrentHashMap<>();
+    private static final AtomicInteger SEQUENCIA = new AtomicInteger();
+
+    private Servidor servidor;
+    private Properties ambiente;
+
+    public interface Contador {
+        int proximo();
+    }
+
+    @Before
+    public void setUp() {
+        //Propriedades diferentes a cada teste, para não reaproveitar o localizador de outro teste.
+        String id = "servidor-" + SEQUENCIA.incrementAndGet();
+        servidor = new Servidor();
+        SERVIDORES.put(id, servidor);
+        ambiente = new Properties();
+        ambiente.setProperty(Context.INITIAL_CONTEXT_FACTORY, Fabrica.class.getName());
+        ambiente.setProperty("teste.servidor", id);
+    }
+
+    @Test
+    public void stubEContextoSaoReaproveitados() throws Exception {
+        Contador primeiro = LocalizadorRemoto.para(ambiente).localizar(NOME, Contador.class);
+        Contador segundo = LocalizadorRemoto.para(ambiente).localizar(NOME, Contador.class);
+
+        for (int i = 0; i < 10; i++) {
+            primeiro.proximo();
+            segundo.proximo();
+        }
+
+        assertEquals(1, servidor.contextos.get());
+        assertEquals(1, servidor.lookups.get());
+        assertEquals(20, servidor.chamadas.get());
+    }
+
+    @Test
+    public void repeteComNovoStubQuandoOBeanNaoExisteMais() throws Exception {
+        Contador contador = LocalizadorRemoto.para(ambiente).localizar(NOME, Contador.class);
+        contador.proximo();
+        servidor.redeploy(new NoSuchObjectException("bean removido"));
+
+        assertEquals(1, contador.proximo());
+        assertEquals(2, servidor.lookups.get());
+    }
+
+    @Test
+    public void repeteQuandoOOrbInformaQueAChamadaNaoFoiExecutada() throws Exception {
+        Contador contador = LocalizadorRemoto.para(ambiente).localizar(NOME, Contador.class);
+        servidor.redeploy(new TRANSIENT(0, CompletionStatus.COMPLETED_NO));
+
+        assertEquals(1, contador.proximo());
+        assertEquals(2, servidor.lookups.get());
+    }
+
+    @Test
+    public void naoRepeteQuandoAChamadaPodeTerSidoExecutada() throws Exception {
+        Contador contador = LocalizadorRemoto.para(ambiente).localizar(NOME, Contador.class);
+        servidor.redeploy(new COMM_FAILURE(0, CompletionStatus.COMPLETED_MAYBE));
+
+        try {
+            contador.proximo();
+            fail("A falha deveria ser propagada");
+        } catch (COMM_FAILURE ex) {
+            assertEquals(CompletionStatus.COMPLETED_MAYBE, ex.completed);
+        }
+        assertEquals(1, servidor.lookups.get());
+    }
+
+    @Test
+    public void excecaoDaAplicacaoEhPropagadaSemNovoLookup() throws Exception {
+        Contador contador = LocalizadorRemoto.para(ambiente).localizar(NOME, Contador.class);
+        servidor.falhaAplicacao = new IllegalArgumentException("regra de negócio");
+
+        try {
+            contador.proximo();
+            fail("A exceção da aplicação deveria ser propagada");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("regra de negócio", ex.getMessage());
+        }
+        assertEquals(1, servidor.lookups.get());
+    }
+
+    @Test
+    public void contextoEhRecriadoQuandoOLookupFalha() throws Exception {
+        servidor.falhasLookup.set(1);
+
+        Contador contador = LocalizadorRemoto.para(ambiente).localizar(NOME, Contador.class);
+
+        assertEquals(1, contador.proximo());
+        assertEquals(2, servidor.contextos.get());
+        assertEquals(1, servidor.contextosFechados.get());
+    }
+
+    @Test(expected = NameNotFoundException.class)
+    public void nomeInexistente() throws Exception {
+        LocalizadorRemoto.para(ambiente).localizar("java:global/teste/Inexistente", Contador.class);
+    }
+
+    @Test
+    public void statefulFazLookupACadaChamada() throws Exception {
+        LocalizadorRemoto localizador = LocalizadorRemoto.para(ambiente);
+        Contador primeiro = localizador.localizarStateful(NOME, Contador.class);
+        Contador segundo = localizador.localizarStateful(NOME, Contador.class);
+
+        assertNotSame(primeiro, segundo);
+        assertEquals(2, servidor.lookups.get());
+        assertEquals(1, servidor.contextos.get());
+    }
+
+    /*
+     * Custo simulado: 20 ms para criar o contexto (inicialização do ORB) e
+     * 1 ms por lookup (ida ao servidor de nomes). Os tempos são apenas
+     * informativos.
+     */
+    @Test
+    public void comparacaoComLookupACadaUso() throws Exception {
+        final int usos = 50;
+        servidor.custoContexto = 20;
+        servidor.custoLookup = 1;
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < usos; i++) {
+            Context contexto = new InitialContext(ambiente);
+            ((Contador) contexto.lookup(NOME)).proximo();
+            contexto.close();
+        }
+        long semCache = System.nanoTime() - inicio;
+
+        inicio = System.nanoTime();
+        for (int i = 0; i < usos; i++) {
+            LocalizadorRemoto.para(ambiente).localizar(NOME, Contador.class).proximo();
+        }
+        long comCache = System.nanoTime() - inicio;
+
+        System.out.printf("%d usos: %d ms com novo contexto e lookup a cada uso, %d ms com o LocalizadorRemoto%n",
+                usos, TimeUnit.NANOSECONDS.toMillis(semCache), TimeUnit.NANOSECONDS.toMillis(comCache));
+        assertEquals(usos + 1, servidor.contextos.get());
+        assertEquals(usos + 1, servidor.lookups.get());
+    }
+
+    /**
+     * Cria os contextos do Servidor indicado na propriedade "teste.servidor".
+     */
+    public static class Fabrica implements InitialContextFactory {
+        @Override
+        public Context getInitialContext(Hashtable<?, ?> ambiente) throws NamingException {
+            final Servidor servidor = SERVIDORES.get((String) ambiente.get("teste.servidor"));
+            servidor.contextos.incrementAndGet();
+            esperar(servidor.custoContexto);
+            return (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[]{Context.class},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+                            switch (metodo.getName()) {
+                                case "lookup":
+                                    return servidor.lookup((String) args[0]);
+                                case "close":
+                                    servidor.contextosFechados.incrementAndGet();
+                                    return null;
+                                default:
+                                    throw new UnsupportedOperationException(metodo.getName());
+                            }
+                        }
+                    });
+        }
+    }
+
+    /*
+     * Servidor de nomes com um único bean publicado. Cada lookup devolve um
+     * novo stub; após um redeploy, os stubs antigos falham com a exceção
+     * informada.
+     */
+    private static class Servidor {
+        private final AtomicInteger contextos = new AtomicInteger();
+        private final AtomicInteger contextosFechados = new AtomicInteger();
+        private final AtomicInteger lookups = new AtomicInteger();
+        private final AtomicInteger chamadas = new AtomicInteger();
+        private final AtomicInteger falhasLookup = new AtomicInteger();
+        private volatile long custoContexto;
+        private volatile long custoLookup;
+        private volatile int versao;
+        private volatile RuntimeException falhaAplicacao;
+        private volatile Exception falhaStubAntigo;
+
+        void redeploy(Exception falhaStubAntigo) {
+            this.falhaStubAntigo = falhaStubAntigo;
+            versao++;
+        }
+
+        Object lookup(String nome) throws NamingException {
+            esperar(custoLookup);
+            if (falhasLookup.getAndDecrement() > 0) {
+                throw new ServiceUnavailableException("ORB não responde");
+            }
+            if (!NOME.equals(nome)) {
+                throw new NameNotFoundException(nome);
+            }
+            lookups.incrementAndGet();
+            final int versaoStub = versao;
+            final AtomicInteger valor = new AtomicInteger();
+            return Proxy.newProxyInstance(Contador.class.getClassLoader(), new Class<?>[]{Contador.class},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+                            if (metodo.getDeclaringClass() == Object.class) {
+                                return metodo.invoke(this, args);
+                            }
+                            if (versaoStub != versao) {
+                                throw falhaStubAntigo;
+                            }
+                            if (falhaAplicacao != null) {
+                                throw falhaAplicacao;
+                            }
+                            chamadas.incrementAndGet();
+                            return valor.incrementAndGet();
+                        }
+                    });
+        }
+    }
+
+    private static void esperar(long milissegundos) {
+        if (milissegundos > 0) {
+            try {
+                Thread.sleep(milissegundos);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
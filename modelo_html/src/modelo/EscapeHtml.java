@@ -0,0 +1,84 @@
+package modelo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escapa e codifica texto em UTF-8 diretamente para um OutputStream, usando
+ * um buffer por thread em vez de criar uma String escapada e um byte[] por
+ * valor.
+ *
+ * @author MASC
+ */
+final class EscapeHtml {
+    private static final int TAMANHO_BUFFER = 512;
+    /* Espaço para a maior sequência gravada de uma vez ("&quot;"). */
+    private static final int FOLGA = 6;
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[TAMANHO_BUFFER];
+        }
+    };
+
+    private EscapeHtml() {
+
+    }
+
+    static void escrever(OutputStream saida, String texto) throws IOException {
+        byte[] buffer = BUFFER.get();
+        int posicao = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            if (posicao > TAMANHO_BUFFER - FOLGA) {
+                saida.write(buffer, 0, posicao);
+                posicao = 0;
+            }
+            char c = texto.charAt(i);
+            switch (c) {
+                case '<':
+                    posicao = copiar("&lt;", buffer, posicao);
+                    break;
+                case '>':
+                    posicao = copiar("&gt;", buffer, posicao);
+                    break;
+                case '&':
+                    posicao = copiar("&amp;", buffer, posicao);
+                    break;
+                case '"':
+                    posicao = copiar("&quot;", buffer, posicao);
+                    break;
+                case '\'':
+                    posicao = copiar("&#39;", buffer, posicao);
+                    break;
+                default:
+                    if (c < 0x80) {
+                        buffer[posicao++] = (byte) c;
+                    } else if (c < 0x800) {
+                        buffer[posicao++] = (byte) (0xC0 | (c >> 6));
+                        buffer[posicao++] = (byte) (0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                            && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                        int codigo = Character.toCodePoint(c, texto.charAt(++i));
+                        buffer[posicao++] = (byte) (0xF0 | (codigo >> 18));
+                        buffer[posicao++] = (byte) (0x80 | ((codigo >> 12) & 0x3F));
+                        buffer[posicao++] = (byte) (0x80 | ((codigo >> 6) & 0x3F));
+                        buffer[posicao++] = (byte) (0x80 | (codigo & 0x3F));
+                    } else if (Character.isSurrogate(c)) {
+                        buffer[posicao++] = '?';
+                    } else {
+                        buffer[posicao++] = (byte) (0xE0 | (c >> 12));
+                        buffer[posicao++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        buffer[posicao++] = (byte) (0x80 | (c & 0x3F));
+                    }
+            }
+        }
+        saida.write(buffer, 0, posicao);
+    }
+
+    private static int copiar(String entidade, byte[] buffer, int posicao) {
+        for (int i = 0; i < entidade.length(); i++) {
+            buffer[posicao++] = (byte) entidade.charAt(i);
+        }
+        return posicao;
+    }
+}
@@ -0,0 +1,73 @@
+package modelo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Modelo HTML pré-compilado. O texto é dividido uma única vez, na criação,
+ * em trechos estáticos (já codificados em UTF-8) e marcadores ${nome}. Na
+ * renderização os trechos são copiados direto para a saída e os valores são
+ * escapados e codificados sem criar Strings intermediárias.
+ *
+ * Exemplo:
+ * <pre>
+ * private static final Modelo LINHA = Modelo.compilar("&lt;h1&gt;${sigla}:${nome}&lt;/h1&gt;\n");
+ * ...
+ * LINHA.escrever(response.getOutputStream(), estado.getSigla(), estado.getNome());
+ * </pre>
+ *
+ * Os valores são informados na ordem em que os marcadores aparecem. Listas
+ * são montadas com um modelo para o início, um para cada item e um para o
+ * fim da página. Instâncias são imutáveis e podem ser compartilhadas entre
+ * threads.
+ *
+ * @author MASC
+ */
+public final class Modelo {
+    private final byte[][] trechos;
+    private final String[] marcadores;
+
+    private Modelo(byte[][] trechos, String[] marcadores) {
+        this.trechos = trechos;
+        this.marcadores = marcadores;
+    }
+
+    public static Modelo compilar(String texto) {
+        List<byte[]> trechos = new ArrayList<>();
+        List<String> marcadores = new ArrayList<>();
+        int inicio = 0;
+        int abertura;
+        while ((abertura = texto.indexOf("${", inicio)) >= 0) {
+            int fechamento = texto.indexOf('}', abertura);
+            if (fechamento < 0) {
+                throw new IllegalArgumentException("Marcador sem '}' na posição " + abertura);
+            }
+            trechos.add(texto.substring(inicio, abertura).getBytes(StandardCharsets.UTF_8));
+            marcadores.add(texto.substring(abertura + 2, fechamento));
+            inicio = fechamento + 1;
+        }
+        trechos.add(texto.substring(inicio).getBytes(StandardCharsets.UTF_8));
+        return new Modelo(trechos.toArray(new byte[trechos.size()][]), marcadores.toArray(new String[marcadores.size()]));
+    }
+
+    /**
+     * Escreve o modelo na saída, substituindo cada marcador pelo valor
+     * correspondente escapado para HTML. Valores null são escritos vazios.
+     */
+    public void escrever(OutputStream saida, Object... valores) throws IOException {
+        if (valores.length != marcadores.length) {
+            throw new IllegalArgumentException(String.format("O modelo espera %d valores, recebeu %d",
+                    marcadores.length, valores.length));
+        }
+        for (int i = 0; i < marcadores.length; i++) {
+            saida.write(trechos[i]);
+            if (valores[i] != null) {
+                EscapeHtml.escrever(saida, valores[i].toString());
+            }
+        }
+        saida.write(trechos[marcadores.length]);
+    }
+}
@@ -0,0 +1,130 @@
+package modelo.filtro;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Filtro de saída para páginas de listagem.
+ *
+ * - Define o tamanho do buffer da resposta (tamanhoBuffer, padrão 16 KB).
+ * - Respostas menores que limiteCompressao (padrão 1 KB) são enviadas sem
+ *   compressão e com Content-Length.
+ * - Respostas maiores, de tipos textuais, são comprimidas com gzip ou deflate
+ *   quando o cliente aceita, usando Deflaters de um pool.
+ *
+ * Os parâmetros são lidos dos init-params do filtro. O filtro não tem
+ * mapeamento próprio: cada aplicação o registra para as suas URLs, por
+ * exemplo com uma subclasse anotada com @WebFilter.
+ *
+ * Em servlets assíncronos, request.startAsync() já usa a resposta
+ * encapsulada pelo filtro; o servlet deve fechar o stream de saída ao
+ * terminar. Escrita não bloqueante (setWriteListener) desativa a compressão
+ * da resposta.
+ *
+ * @author MASC
+ */
+public class FiltroCompressao implements Filter {
+    private int tamanhoBuffer = 16 * 1024;
+    private int limiteCompressao = 1024;
+    private PoolDeflater poolGzip;
+    private PoolDeflater poolDeflate;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        tamanhoBuffer = lerInteiro(filterConfig, "tamanhoBuffer", tamanhoBuffer);
+        limiteCompressao = lerInteiro(filterConfig, "limiteCompressao", limiteCompressao);
+        int nivel = lerInteiro(filterConfig, "nivelCompressao", Deflater.DEFAULT_COMPRESSION);
+        int tamanhoPool = lerInteiro(filterConfig, "tamanhoPool", 2 * Runtime.getRuntime().availableProcessors());
+        poolGzip = new PoolDeflater(tamanhoPool, nivel, true);
+        poolDeflate = new PoolDeflater(tamanhoPool, nivel, false);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        response.setBufferSize(tamanhoBuffer);
+        if (!(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest requisicao = (HttpServletRequest) request;
+        String codificacao = escolherCodificacao(requisicao.getHeader("Accept-Encoding"));
+        PoolDeflater pool = "gzip".equals(codificacao) ? poolGzip
+                : "deflate".equals(codificacao) ? poolDeflate : null;
+        final RespostaComprimida resposta = new RespostaComprimida((HttpServletResponse) response,
+                codificacao, pool, limiteCompressao);
+        RequisicaoFiltrada requisicaoFiltrada = new RequisicaoFiltrada(requisicao, resposta);
+        chain.doFilter(requisicaoFiltrada, resposta);
+
+        /*
+         * Em modo assíncrono a resposta é finalizada pelo listener que
+         * RequisicaoFiltrada registra no próprio startAsync.
+         */
+        if (!requisicaoFiltrada.isAsyncStarted()) {
+            resposta.finalizar();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        poolGzip.encerrar();
+        poolDeflate.encerrar();
+    }
+
+    /*
+     * Prefere gzip a deflate. Uma codificação com q=0 é considerada recusada.
+     */
+    static String escolherCodificacao(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String item : acceptEncoding.split(",")) {
+            String[] partes = item.trim().split(";");
+            String nome = partes[0].trim().toLowerCase();
+            if (recusada(partes)) {
+                continue;
+            }
+            if (nome.equals("gzip") || nome.equals("x-gzip")) {
+                return "gzip";
+            }
+            deflate |= nome.equals("deflate");
+        }
+        return deflate ? "deflate" : null;
+    }
+
+    private static boolean recusada(String[] partes) {
+        for (int i = 1; i < partes.length; i++) {
+            String parametro = partes[i].trim();
+            if (parametro.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parametro.substring(2).trim()) == 0;
+                } catch (NumberFormatException ex) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int lerInteiro(FilterConfig config, String nome, int padrao) throws ServletException {
+        String valor = config.getInitParameter(nome);
+        if (valor == null) {
+            return padrao;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException ex) {
+            throw new ServletException("Parâmetro " + nome + " inválido: " + valor, ex);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package modelo.filtro;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Pool de Deflaters. Cada Deflater mantém buffers nativos de algumas
+ * centenas de KB; criá-lo por resposta custa mais do que comprimir uma
+ * página pequena. Os objetos devolvidos são reinicializados com reset(); os
+ * que excedem a capacidade do pool são liberados com end().
+ *
+ * @author MASC
+ */
+class PoolDeflater {
+    private final BlockingQueue<Deflater> livres;
+    private final int nivel;
+    private final boolean semCabecalho;
+
+    /**
+     * @param semCabecalho true para o formato deflate "cru", usado dentro do
+     * gzip; false para o formato zlib do Content-Encoding deflate.
+     */
+    PoolDeflater(int capacidade, int nivel, boolean semCabecalho) {
+        this.livres = new ArrayBlockingQueue<>(capacidade);
+        this.nivel = nivel;
+        this.semCabecalho = semCabecalho;
+    }
+
+    Deflater obter() {
+        Deflater deflater = livres.poll();
+        return deflater != null ? deflater : new Deflater(nivel, semCabecalho);
+    }
+
+    void devolver(Deflater deflater) {
+        deflater.reset();
+        if (!livres.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    void encerrar() {
+        Deflater deflater;
+        while ((deflater = livres.poll()) != null) {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package modelo.filtro;
+
+import java.io.IOException;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Requisição repassada pelo FiltroCompressao. Ao iniciar o processamento
+ * assíncrono, registra no AsyncContext o listener que finaliza a resposta
+ * comprimida, antes que o servlet possa despachar o trabalho ou chamar
+ * complete(). startAsync() sem argumentos usa a resposta comprimida.
+ *
+ * @author MASC
+ */
+class RequisicaoFiltrada extends HttpServletRequestWrapper {
+    private final RespostaComprimida resposta;
+
+    RequisicaoFiltrada(HttpServletRequest request, RespostaComprimida resposta) {
+        super(request);
+        this.resposta = resposta;
+    }
+
+    @Override
+    public AsyncContext startAsync() throws IllegalStateException {
+        return startAsync(this, resposta);
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse)
+            throws IllegalStateException {
+        AsyncContext contexto = super.startAsync(servletRequest, servletResponse);
+        contexto.addListener(new Finalizador());
+        return contexto;
+    }
+
+    /*
+     * Normalmente o servlet assíncrono fecha o stream antes de complete();
+     * este listener garante o envio do restante e a liberação do Deflater.
+     */
+    private class Finalizador implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            resposta.finalizar();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            resposta.finalizar();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            resposta.finalizar();
+        }
+
+        /*
+         * Um novo startAsync() remove os listeners do ciclo anterior; o
+         * registro é refeito pelo próprio startAsync desta classe.
+         */
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package modelo.filtro;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Resposta usada pelo FiltroCompressao. Os primeiros bytes ficam em um
+ * buffer do tamanho do limite de compressão; se a resposta terminar antes de
+ * enchê-lo, ela é enviada sem compressão e com Content-Length. Se o limite
+ * for ultrapassado, a decisão é tomada naquele momento: tipos textuais são
+ * comprimidos à medida que são escritos; os demais seguem sem alteração.
+ *
+ * @author MASC
+ */
+class RespostaComprimida extends HttpServletResponseWrapper {
+    private static final byte[] CABECALHO_GZIP = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final String codificacao;
+    private final PoolDeflater pool;
+    private final int limite;
+    private Saida saida;
+    private PrintWriter writer;
+    private long comprimentoDeclarado = -1;
+
+    RespostaComprimida(HttpServletResponse response, String codificacao, PoolDeflater pool, int limite) {
+        super(response);
+        this.codificacao = codificacao;
+        this.pool = pool;
+        this.limite = limite;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() já foi chamado");
+        }
+        return obterSaida();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (saida != null) {
+                throw new IllegalStateException("getOutputStream() já foi chamado");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(obterSaida(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    /*
+     * O comprimento informado pelo servlet só vale para a resposta sem
+     * compressão; ele é aplicado quando a decisão é tomada.
+     */
+    @Override
+    public void setContentLength(int len) {
+        comprimentoDeclarado = len;
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        comprimentoDeclarado = len;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            comprimentoDeclarado = value == null ? -1 : Long.parseLong(value);
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setHeader(name, value);
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (saida != null) {
+            saida.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (saida != null) {
+            saida.descartar();
+        }
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        if (saida != null) {
+            saida.descartar();
+        }
+        comprimentoDeclarado = -1;
+        super.reset();
+    }
+
+    /**
+     * Envia o que ainda estiver no buffer e libera o Deflater. Pode ser
+     * chamado mais de uma vez.
+     */
+    void finalizar() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (saida != null) {
+            saida.close();
+        }
+    }
+
+    private Saida obterSaida() {
+        if (saida == null) {
+            saida = new Saida();
+        }
+        return saida;
+    }
+
+    private boolean deveComprimir() {
+        if (pool == null || getHeader("Content-Encoding") != null || getStatus() != HttpServletResponse.SC_OK) {
+            return false;
+        }
+        String tipo = getContentType();
+        if (tipo == null) {
+            return false;
+        }
+        tipo = tipo.toLowerCase();
+        return tipo.startsWith("text/") || tipo.startsWith("application/json")
+                || tipo.startsWith("application/javascript") || tipo.contains("xml");
+    }
+
+    private class Saida extends ServletOutputStream {
+        private byte[] buffer = new byte[limite];
+        private int contagem;
+        private ServletOutputStream destino;
+        private Deflater deflater;
+        private byte[] bufferDeflater;
+        private CRC32 crc;
+        private boolean fechada;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fechada) {
+                throw new IOException("Stream fechado");
+            }
+            if (destino == null) {
+                if (contagem + len <= buffer.length) {
+                    System.arraycopy(b, off, buffer, contagem, len);
+                    contagem += len;
+                    return;
+                }
+                iniciarEnvio(deveComprimir());
+            }
+            if (deflater != null) {
+                comprimir(b, off, len);
+            } else {
+                destino.write(b, off, len);
+            }
+        }
+
+        /*
+         * Enquanto a resposta está no buffer, flush() não envia nada, para
+         * que o Content-Length ainda possa ser definido.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (destino == null) {
+                return;
+            }
+            if (deflater != null) {
+                drenar(Deflater.SYNC_FLUSH);
+            }
+            destino.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fechada) {
+                return;
+            }
+            fechada = true;
+            try {
+                if (destino == null) {
+                    if (contagem > 0) {
+                        RespostaComprimida.super.setContentLength(contagem);
+                        RespostaComprimida.super.getOutputStream().write(buffer, 0, contagem);
+                    }
+                } else if (deflater != null) {
+                    terminar();
+                    if (crc != null) {
+                        escreverInteiro((int) crc.getValue());
+                        escreverInteiro(deflater.getTotalIn());
+                    }
+                }
+            } finally {
+                if (deflater != null) {
+                    pool.devolver(deflater);
+                    deflater = null;
+                }
+                buffer = null;
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return destino == null || destino.isReady();
+        }
+
+        /*
+         * Na escrita não bloqueante cada write() só pode ser feito quando o
+         * stream do container está pronto, e o Deflater pode produzir várias
+         * escritas por chamada. Por isso a resposta segue sem compressão, com
+         * o listener registrado diretamente no stream do container.
+         */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (destino == null) {
+                try {
+                    iniciarEnvio(false);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            } else if (deflater != null) {
+                throw new IllegalStateException("A resposta já está sendo comprimida");
+            }
+            destino.setWriteListener(writeListener);
+        }
+
+        void descartar() {
+            if (destino == null) {
+                contagem = 0;
+            }
+        }
+
+        private void iniciarEnvio(boolean comprimir) throws IOException {
+            if (comprimir) {
+                RespostaComprimida.super.setHeader("Content-Encoding", codificacao);
+                RespostaComprimida.super.addHeader("Vary", "Accept-Encoding");
+                enfraquecerEtag();
+                destino = RespostaComprimida.super.getOutputStream();
+                deflater = pool.obter();
+                bufferDeflater = new byte[8 * 1024];
+                if ("gzip".equals(codificacao)) {
+                    crc = new CRC32();
+                    destino.write(CABECALHO_GZIP);
+                }
+                comprimir(buffer, 0, contagem);
+            } else {
+                if (pool != null) {
+                    RespostaComprimida.super.addHeader("Vary", "Accept-Encoding");
+                }
+                if (comprimentoDeclarado >= 0) {
+                    RespostaComprimida.super.setContentLengthLong(comprimentoDeclarado);
+                }
+                destino = RespostaComprimida.super.getOutputStream();
+                destino.write(buffer, 0, contagem);
+            }
+            contagem = 0;
+        }
+
+        /*
+         * A representação comprimida não é idêntica byte a byte à original,
+         * então um ETag forte passa a ser fraco (W/"...").
+         */
+        private void enfraquecerEtag() {
+            String etag = getHeader("ETag");
+            if (etag != null && !etag.startsWith("W/")) {
+                RespostaComprimida.super.setHeader("ETag", "W/" + etag);
+            }
+        }
+
+        private void comprimir(byte[] b, int off, int len) throws IOException {
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            deflater.setInput(b, off, len);
+            drenar(Deflater.NO_FLUSH);
+        }
+
+        /*
+         * Com SYNC_FLUSH, um retorno igual ao tamanho do buffer indica que
+         * ainda há dados pendentes; com NO_FLUSH, o Deflater pede nova
+         * entrada quando terminou de consumir a atual.
+         */
+        private void drenar(int modo) throws IOException {
+            int produzidos;
+            do {
+                produzidos = deflater.deflate(bufferDeflater, 0, bufferDeflater.length, modo);
+                destino.write(bufferDeflater, 0, produzidos);
+            } while (produzidos == bufferDeflater.length || !deflater.needsInput());
+        }
+
+        private void terminar() throws IOException {
+            deflater.finish();
+            while (!deflater.finished()) {
+                int produzidos = deflater.deflate(bufferDeflater);
+                destino.write(bufferDeflater, 0, produzidos);
+            }
+        }
+
+        private void escreverInteiro(int valor) throws IOException {
+            destino.write(valor & 0xff);
+            destino.write((valor >> 8) & 0xff);
+            destino.write((valor >> 16) & 0xff);
+            destino.write((valor >> 24) & 0xff);
+        }
+    }
+}
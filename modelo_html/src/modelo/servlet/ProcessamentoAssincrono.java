@@ -0,0 +1,391 @@
+package modelo.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Processamento assíncrono para servlets que fazem chamadas bloqueantes (EJB,
+ * banco de dados). A requisição é colocada em modo assíncrono e a tarefa roda
+ * em uma thread do executor, de modo que a thread do container volta ao pool
+ * enquanto a chamada bloqueia.
+ *
+ * O executor gerenciado padrão do GlassFish tem fila sem limite, então ele
+ * nunca recusa tarefas. O limite de requisições em andamento (na fila ou em
+ * execução) é controlado aqui: acima dele a requisição é recusada com 503 e
+ * Retry-After, em vez de esperar indefinidamente. O limite vem do init-param
+ * "limiteAssincrono" do servlet (padrão 64).
+ *
+ * O tempo máximo de cada requisição assíncrona vem do init-param
+ * "timeoutAssincrono", em milissegundos (padrão 30000). Se a tarefa não
+ * terminar nesse prazo, a requisição é encerrada com 503 e Retry-After. A
+ * tarefa recebe uma resposta protegida: depois do timeout, o que ela ainda
+ * escrever é descartado, pois o container já concluiu (e pode ter
+ * reaproveitado) a resposta original.
+ *
+ * Uso, em um servlet com asyncSupported = true:
+ * <pre>
+ * &#64;Resource
+ * private ManagedExecutorService executor;
+ * private ProcessamentoAssincrono processamento;
+ *
+ * public void init() throws ServletException {
+ *     processamento = new ProcessamentoAssincrono(executor, getServletConfig());
+ * }
+ *
+ * protected void doGet(HttpServletRequest request, HttpServletResponse response) ... {
+ *     processamento.processar(request, response, this::processRequest);
+ * }
+ * </pre>
+ *
+ * @author MASC
+ */
+public final class ProcessamentoAssincrono {
+    public static final int LIMITE_PADRAO = 64;
+    public static final long TIMEOUT_PADRAO = 30000;
+    private static final Logger LOGGER = Logger.getLogger(ProcessamentoAssincrono.class.getName());
+
+    private final ExecutorService executor;
+    private final Semaphore vagas;
+    private final long timeout;
+
+    /**
+     * Trabalho executado fora da thread do container, normalmente o
+     * processRequest do servlet.
+     */
+    public interface Tarefa {
+
+        void executar(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException;
+    }
+
+    public ProcessamentoAssincrono(ExecutorService executor, int limite) {
+        this(executor, limite, TIMEOUT_PADRAO);
+    }
+
+    /**
+     * @param timeout tempo máximo de cada requisição, em milissegundos.
+     */
+    public ProcessamentoAssincrono(ExecutorService executor, int limite, long timeout) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite inválido: " + limite);
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout inválido: " + timeout);
+        }
+        this.executor = executor;
+        this.vagas = new Semaphore(limite);
+        this.timeout = timeout;
+    }
+
+    public ProcessamentoAssincrono(ExecutorService executor, ServletConfig config) throws ServletException {
+        this(executor, (int) lerParametro(config, "limiteAssincrono", LIMITE_PADRAO),
+                lerParametro(config, "timeoutAssincrono", TIMEOUT_PADRAO));
+    }
+
+    public void processar(HttpServletRequest request, HttpServletResponse response, final Tarefa tarefa)
+            throws IOException {
+        if (!vagas.tryAcquire()) {
+            recusar(response);
+            return;
+        }
+
+        //Preserva as respostas encapsuladas por filtros, como o FiltroCompressao.
+        final AsyncContext contexto = request.startAsync(request, response);
+        final RespostaProtegida resposta = new RespostaProtegida((HttpServletResponse) contexto.getResponse());
+        contexto.setTimeout(timeout);
+        contexto.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent evento) throws IOException {
+                if (resposta.encerrar()) {
+                    LOGGER.log(Level.WARNING, "Requisição assíncrona encerrada após {0} ms", timeout);
+                    if (!resposta.getOriginal().isCommitted()) {
+                        recusar(resposta.getOriginal());
+                    }
+                    contexto.complete();
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent evento) {
+                //O cliente desistiu: a tarefa não deve mais escrever na resposta.
+                if (resposta.encerrar()) {
+                    contexto.complete();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent evento) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent evento) {
+            }
+        });
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        executar(contexto, tarefa, resposta);
+                    } finally {
+                        vagas.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            vagas.release();
+            if (resposta.encerrar()) {
+                recusar(resposta.getOriginal());
+                contexto.complete();
+            }
+        }
+    }
+
+    /**
+     * Quantidade de requisições que ainda podem ser aceitas.
+     */
+    public int getVagas() {
+        return vagas.availablePermits();
+    }
+
+    /*
+     * Quem encerrar a resposta primeiro, a tarefa ou o timeout, é quem chama
+     * complete().
+     */
+    private static void executar(AsyncContext contexto, Tarefa tarefa, RespostaProtegida resposta) {
+        if (resposta.isEncerrada()) {
+            //O timeout ocorreu enquanto a tarefa esperava na fila do executor.
+            return;
+        }
+
+        try {
+            tarefa.executar((HttpServletRequest) contexto.getRequest(), resposta.getProtegida());
+        } catch (ServletException | IOException | RuntimeException ex) {
+            if (resposta.isEncerrada()) {
+                LOGGER.log(Level.FINE, "Tarefa concluída após o timeout da requisição", ex);
+            } else {
+                LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                resposta.enviarErro(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        } finally {
+            if (resposta.encerrar()) {
+                contexto.complete();
+            }
+        }
+    }
+
+    private static void recusar(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", "1");
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    private static long lerParametro(ServletConfig config, String nome, long padrao) throws ServletException {
+        String valor = config.getInitParameter(nome);
+        if (valor == null) {
+            return padrao;
+        }
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException ex) {
+            throw new ServletException("Parâmetro " + nome + " inválido: " + valor, ex);
+        }
+    }
+
+    /*
+     * Resposta entregue à tarefa. Cada chamada, inclusive as escritas no
+     * Writer e no OutputStream, passa pelo mesmo bloqueio que encerrar(); a
+     * partir do encerramento, nada mais chega à resposta original.
+     */
+    private static final class RespostaProtegida implements InvocationHandler {
+        private final HttpServletResponse original;
+        private final HttpServletResponse protegida;
+        private boolean encerrada;
+        private PrintWriter writer;
+        private ServletOutputStream saida;
+
+        RespostaProtegida(HttpServletResponse original) {
+            this.original = original;
+            this.protegida = (HttpServletResponse) Proxy.newProxyInstance(
+                    ProcessamentoAssincrono.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, this);
+        }
+
+        HttpServletResponse getOriginal() {
+            return original;
+        }
+
+        HttpServletResponse getProtegida() {
+            return protegida;
+        }
+
+        /**
+         * @return true para quem encerrou a resposta, false se ela já estava
+         * encerrada.
+         */
+        synchronized boolean encerrar() {
+            if (encerrada) {
+                return false;
+            }
+            encerrada = true;
+            return true;
+        }
+
+        synchronized boolean isEncerrada() {
+            return encerrada;
+        }
+
+        synchronized void enviarErro(int status) {
+            if (!encerrada && !original.isCommitted()) {
+                try {
+                    original.sendError(status);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.FINE, ex.getMessage(), ex);
+                }
+            }
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            switch (metodo.getName()) {
+                case "getWriter":
+                    verificar();
+                    if (writer == null) {
+                        writer = new PrintWriter(new WriterProtegido(original.getWriter()));
+                    }
+                    return writer;
+                case "getOutputStream":
+                    verificar();
+                    if (saida == null) {
+                        saida = new SaidaProtegida(original.getOutputStream());
+                    }
+                    return saida;
+                default:
+                    if (metodo.getDeclaringClass() == Object.class) {
+                        return metodo.invoke(this, args);
+                    }
+                    verificar();
+                    try {
+                        return metodo.invoke(original, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+            }
+        }
+
+        private void verificar() {
+            if (encerrada) {
+                throw new IllegalStateException("Resposta já encerrada por timeout");
+            }
+        }
+
+        private void verificarEscrita() throws IOException {
+            if (encerrada) {
+                throw new IOException("Resposta já encerrada por timeout");
+            }
+        }
+
+        /*
+         * O PrintWriter engole a IOException: depois do timeout, as escritas
+         * da tarefa são simplesmente descartadas.
+         */
+        private final class WriterProtegido extends Writer {
+            private final Writer destino;
+
+            WriterProtegido(Writer destino) {
+                this.destino = destino;
+            }
+
+            @Override
+            public void write(char[] caracteres, int inicio, int tamanho) throws IOException {
+                synchronized (RespostaProtegida.this) {
+                    verificarEscrita();
+                    destino.write(caracteres, inicio, tamanho);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                synchronized (RespostaProtegida.this) {
+                    verificarEscrita();
+                    destino.flush();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                synchronized (RespostaProtegida.this) {
+                    verificarEscrita();
+                    destino.close();
+                }
+            }
+        }
+
+        private final class SaidaProtegida extends ServletOutputStream {
+            private final ServletOutputStream destino;
+
+            SaidaProtegida(ServletOutputStream destino) {
+                this.destino = destino;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                synchronized (RespostaProtegida.this) {
+                    verificarEscrita();
+                    destino.write(b);
+                }
+            }
+
+            @Override
+            public void write(byte[] bytes, int inicio, int tamanho) throws IOException {
+                synchronized (RespostaProtegida.this) {
+                    verificarEscrita();
+                    destino.write(bytes, inicio, tamanho);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                synchronized (RespostaProtegida.this) {
+                    verificarEscrita();
+                    destino.flush();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                synchronized (RespostaProtegida.this) {
+                    verificarEscrita();
+                    destino.close();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return destino.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                destino.setWriteListener(listener);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package modelo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes do Modelo e do EscapeHtml, e comparação com a geração de HTML por
+ * println e concatenação usada antes pelos servlets.
+ *
+ * @author MASC
+ */
+public class ModeloTest {
+
+    private static final Modelo LINHA = Modelo.compilar("<h1>${sigla}:${nome}</h1>\n");
+
+    @Test
+    public void valoresSeguemAOrdemDosMarcadores() throws IOException {
+        assertEquals("<h1>PE:Pernambuco</h1>\n", renderizar(LINHA, "PE", "Pernambuco"));
+        assertEquals("ab", renderizar(Modelo.compilar("${x}${y}"), "a", "b"));
+        assertEquals("sem marcadores", renderizar(Modelo.compilar("sem marcadores")));
+    }
+
+    @Test
+    public void valoresSaoEscapados() throws IOException {
+        assertEquals("<h1>&lt;script&gt;:&quot;a&quot; &amp; &#39;b&#39;</h1>\n",
+                renderizar(LINHA, "<script>", "\"a\" & 'b'"));
+    }
+
+    @Test
+    public void trechosEstaticosNaoSaoEscapados() throws IOException {
+        assertEquals("<p class=\"x\">&lt;</p>", renderizar(Modelo.compilar("<p class=\"x\">${v}</p>"), "<"));
+    }
+
+    @Test
+    public void nullEhEscritoVazio() throws IOException {
+        assertEquals("<h1>:Pernambuco</h1>\n", renderizar(LINHA, null, "Pernambuco"));
+    }
+
+    @Test
+    public void codificaUtf8() throws IOException {
+        String texto = "Alô, São Paulo € 😀";
+        assertEquals("<h1>" + texto + ":</h1>\n", renderizar(LINHA, texto, ""));
+    }
+
+    @Test
+    public void surrogateIsoladoViraInterrogacao() throws IOException {
+        assertEquals("a?b", renderizar(Modelo.compilar("${v}"), "a\uD83Db"));
+    }
+
+    /*
+     * Valores maiores que o buffer por thread, com entidades perto do limite
+     * em que o buffer é descarregado.
+     */
+    @Test
+    public void valoresMaioresQueOBuffer() throws IOException {
+        StringBuilder valor = new StringBuilder();
+        StringBuilder esperado = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            valor.append(i % 3 == 0 ? "\"" : "ã");
+            esperado.append(i % 3 == 0 ? "&quot;" : "ã");
+        }
+        assertEquals(esperado.toString(), renderizar(Modelo.compilar("${v}"), valor.toString()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quantidadeErradaDeValores() throws IOException {
+        renderizar(LINHA, "PE");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void marcadorSemFechamento() {
+        Modelo.compilar("<h1>${sigla</h1>");
+    }
+
+    /*
+     * Renderiza 27 linhas por página, como a lista de estados do
+     * SingletonServlet, para uma saída que descarta os bytes. Os números são
+     * apenas informativos: dependem da máquina e não fazem o teste falhar.
+     */
+    @Test
+    public void comparacaoComPrintln() throws IOException {
+        final int paginas = 20000;
+        OutputStream descarte = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        for (int i = 0; i < paginas; i++) {
+            paginaModelo(descarte);
+            paginaPrintln(descarte);
+        }
+
+        long bytes = alocado();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < paginas; i++) {
+            paginaPrintln(descarte);
+        }
+        long tempoPrintln = System.nanoTime() - inicio;
+        long bytesPrintln = alocado() - bytes;
+
+        bytes = alocado();
+        inicio = System.nanoTime();
+        for (int i = 0; i < paginas; i++) {
+            paginaModelo(descarte);
+        }
+        long tempoModelo = System.nanoTime() - inicio;
+        long bytesModelo = alocado() - bytes;
+
+        System.out.printf("println: %d ns e %d bytes por página; Modelo: %d ns e %d bytes por página%n",
+                tempoPrintln / paginas, bytesPrintln / paginas, tempoModelo / paginas, bytesModelo / paginas);
+    }
+
+    private static void paginaModelo(OutputStream saida) throws IOException {
+        for (int i = 0; i < 27; i++) {
+            LINHA.escrever(saida, "PE", "Pernambuco");
+        }
+        saida.flush();
+    }
+
+    private static void paginaPrintln(OutputStream saida) {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8));
+        for (int i = 0; i < 27; i++) {
+            out.println("<h1>" + "PE" + ":" + "Pernambuco" + "</h1>");
+        }
+        out.flush();
+    }
+
+    private static long alocado() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static String renderizar(Modelo modelo, Object... valores) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        modelo.escrever(saida, valores);
+        return new String(saida.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,41 @@
+package modelo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Cria implementações simuladas de interfaces da API de servlets para os
+ * testes, sem container. Métodos não tratados pelo handler retornam null,
+ * false ou zero.
+ *
+ * @author MASC
+ */
+public final class Simulacao {
+
+    private Simulacao() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T criar(Class<T> tipo, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(Simulacao.class.getClassLoader(),
+                new Class<?>[]{tipo}, (proxy, metodo, args) -> {
+                    Object retorno = handler.invoke(proxy, metodo, args);
+                    return retorno == null ? valorPadrao(metodo) : retorno;
+                });
+    }
+
+    private static Object valorPadrao(Method metodo) {
+        Class<?> tipo = metodo.getReturnType();
+        if (tipo == boolean.class) {
+            return false;
+        }
+        if (tipo == int.class) {
+            return 0;
+        }
+        if (tipo == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
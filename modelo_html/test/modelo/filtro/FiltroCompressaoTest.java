@@ -0,0 +1,240 @@
+package modelo.filtro;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static modelo.Simulacao.criar;
+import static org.junit.Assert.*;
+
+/**
+ * Testes do FiltroCompressao com requisição e resposta simuladas por
+ * proxies dinâmicos, sem container.
+ *
+ * @author MASC
+ */
+public class FiltroCompressaoTest {
+    private FiltroCompressao filtro;
+    private Requisicao requisicao;
+    private Resposta resposta;
+
+    @Before
+    public void setUp() throws Exception {
+        filtro = new FiltroCompressao();
+        filtro.init(criar(FilterConfig.class, (proxy, metodo, args) -> null));
+        requisicao = new Requisicao("gzip, deflate");
+        resposta = new Resposta();
+    }
+
+    @After
+    public void tearDown() {
+        filtro.destroy();
+    }
+
+    @Test
+    public void respostaPequenaSemCompressao() throws Exception {
+        filtro.doFilter(requisicao.proxy, resposta.proxy, (req, resp) -> {
+            resp.setContentType("text/html");
+            resp.getWriter().print("<p>ok</p>");
+        });
+
+        assertNull(resposta.cabecalhos.get("Content-Encoding"));
+        assertEquals("9", resposta.cabecalhos.get("Content-Length"));
+        assertEquals("<p>ok</p>", resposta.corpo());
+    }
+
+    @Test
+    public void respostaGrandeComprimidaComGzip() throws Exception {
+        final String texto = textoGrande();
+        filtro.doFilter(requisicao.proxy, resposta.proxy, (req, resp) -> {
+            resp.setContentType("text/html");
+            resp.getWriter().print(texto);
+        });
+
+        assertEquals("gzip", resposta.cabecalhos.get("Content-Encoding"));
+        assertEquals(texto, descomprimir(resposta.bytes.toByteArray()));
+    }
+
+    /*
+     * O servlet conclui o processamento assíncrono antes de o filtro
+     * retornar, sem fechar o stream: a resposta deve ser finalizada pelo
+     * listener registrado em startAsync().
+     */
+    @Test
+    public void assincronoConcluidoAntesDoRetornoDoFiltro() throws Exception {
+        final String texto = textoGrande();
+        FilterChain chain = (req, resp) -> {
+            AsyncContext contexto = req.startAsync();
+            contexto.getResponse().setContentType("text/html");
+            contexto.getResponse().getWriter().print(texto);
+            contexto.complete();
+        };
+        filtro.doFilter(requisicao.proxy, resposta.proxy, chain);
+
+        assertEquals("gzip", resposta.cabecalhos.get("Content-Encoding"));
+        assertEquals(texto, descomprimir(resposta.bytes.toByteArray()));
+    }
+
+    @Test
+    public void escritaNaoBloqueanteSemCompressao() throws Exception {
+        final String texto = textoGrande();
+        final WriteListener ouvinte = criar(WriteListener.class, (proxy, metodo, args) -> null);
+        filtro.doFilter(requisicao.proxy, resposta.proxy, (req, resp) -> {
+            resp.setContentType("text/html");
+            ServletOutputStream saida = resp.getOutputStream();
+            saida.setWriteListener(ouvinte);
+            saida.write(texto.getBytes(StandardCharsets.UTF_8));
+            saida.close();
+        });
+
+        assertSame(ouvinte, resposta.ouvinte);
+        assertNull(resposta.cabecalhos.get("Content-Encoding"));
+        assertEquals(texto, resposta.corpo());
+    }
+
+    private static String textoGrande() {
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            texto.append("<tr><td>").append(i).append("</td><td>Estado ").append(i).append("</td></tr>\n");
+        }
+        return texto.toString();
+    }
+
+    private static String descomprimir(byte[] dados) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (InputStream entrada = new GZIPInputStream(new ByteArrayInputStream(dados))) {
+            byte[] buffer = new byte[4096];
+            int lidos;
+            while ((lidos = entrada.read(buffer)) != -1) {
+                saida.write(buffer, 0, lidos);
+            }
+        }
+        return new String(saida.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class Requisicao {
+        private final HttpServletRequest proxy;
+        private AsyncContext contexto;
+
+        Requisicao(String acceptEncoding) {
+            proxy = criar(HttpServletRequest.class, (p, metodo, args) -> {
+                switch (metodo.getName()) {
+                    case "getHeader":
+                        return "Accept-Encoding".equalsIgnoreCase((String) args[0]) ? acceptEncoding : null;
+                    case "startAsync":
+                        contexto = new Contexto(args[0], args[1]).proxy;
+                        return contexto;
+                    case "isAsyncStarted":
+                        return contexto != null;
+                    case "getAsyncContext":
+                        return contexto;
+                    default:
+                        return null;
+                }
+            });
+        }
+    }
+
+    private static class Contexto {
+        private final AsyncContext proxy;
+        private final List<AsyncListener> ouvintes = new ArrayList<>();
+
+        Contexto(Object request, Object response) {
+            proxy = criar(AsyncContext.class, (p, metodo, args) -> {
+                switch (metodo.getName()) {
+                    case "getRequest":
+                        return request;
+                    case "getResponse":
+                        return response;
+                    case "addListener":
+                        ouvintes.add((AsyncListener) args[0]);
+                        return null;
+                    case "complete":
+                        for (AsyncListener ouvinte : ouvintes) {
+                            ouvinte.onComplete(new AsyncEvent((AsyncContext) p));
+                        }
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+    }
+
+    private static class Resposta {
+        private final HttpServletResponse proxy;
+        private final Map<String, String> cabecalhos = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private String tipo;
+        private WriteListener ouvinte;
+
+        private final ServletOutputStream saida = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                ouvinte = writeListener;
+            }
+        };
+
+        Resposta() {
+            proxy = criar(HttpServletResponse.class, (p, metodo, args) -> {
+                switch (metodo.getName()) {
+                    case "setHeader":
+                    case "addHeader":
+                        cabecalhos.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "getHeader":
+                        return cabecalhos.get((String) args[0]);
+                    case "setContentLength":
+                    case "setContentLengthLong":
+                        cabecalhos.put("Content-Length", String.valueOf(args[0]));
+                        return null;
+                    case "setContentType":
+                        tipo = (String) args[0];
+                        return null;
+                    case "getContentType":
+                        return tipo;
+                    case "getCharacterEncoding":
+                        return "UTF-8";
+                    case "getStatus":
+                        return HttpServletResponse.SC_OK;
+                    case "getOutputStream":
+                        return saida;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        String corpo() {
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package modelo.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static modelo.Simulacao.criar;
+import static org.junit.Assert.*;
+
+/**
+ * Testes do ProcessamentoAssincrono. O "container" é simulado por um pool
+ * pequeno de threads de trabalho, e o backend por uma espera de 50 ms.
+ *
+ * @author MASC
+ */
+public class ProcessamentoAssincronoTest {
+    private static final int THREADS_CONTAINER = 4;
+    private static final int REQUISICOES = 64;
+    private static final long ATRASO_BACKEND = 50;
+
+    private ExecutorService container;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        container = Executors.newFixedThreadPool(THREADS_CONTAINER);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        container.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void recusaComStatus503AcimaDoLimite() throws Exception {
+        final CountDownLatch liberar = new CountDownLatch(1);
+        ProcessamentoAssincrono processamento = new ProcessamentoAssincrono(executor, 1);
+        Requisicao primeira = new Requisicao(null);
+        Requisicao segunda = new Requisicao(null);
+        ProcessamentoAssincrono.Tarefa tarefa = (request, response) -> aguardar(liberar);
+
+        processamento.processar(primeira.request, primeira.response, tarefa);
+        processamento.processar(segunda.request, segunda.response, tarefa);
+
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, segunda.status);
+        assertEquals("1", segunda.cabecalhos.get("Retry-After"));
+        assertFalse(segunda.assincrona);
+        liberar.countDown();
+        assertTrue(primeira.concluida.await(5, TimeUnit.SECONDS));
+        assertEquals(0, primeira.status);
+        aguardarVaga(processamento, 1);
+    }
+
+    @Test
+    public void erroNaTarefaResponde500() throws Exception {
+        ProcessamentoAssincrono processamento = new ProcessamentoAssincrono(executor, 1);
+        Requisicao requisicao = new Requisicao(null);
+
+        processamento.processar(requisicao.request, requisicao.response, (request, response) -> {
+            throw new IllegalStateException("falha simulada no backend");
+        });
+
+        assertTrue(requisicao.concluida.await(5, TimeUnit.SECONDS));
+        assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, requisicao.status);
+        aguardarVaga(processamento, 1);
+    }
+
+    /*
+     * A chamada ao backend passa do timeout: a requisição é encerrada com 503
+     * e o que a tarefa escreve depois não chega à resposta.
+     */
+    @Test
+    public void timeoutResponde503EDescartaEscritaAtrasada() throws Exception {
+        final CountDownLatch iniciou = new CountDownLatch(1);
+        final CountDownLatch liberar = new CountDownLatch(1);
+        final CountDownLatch terminou = new CountDownLatch(1);
+        ProcessamentoAssincrono processamento = new ProcessamentoAssincrono(executor, 1, 200);
+        Requisicao requisicao = new Requisicao(null);
+
+        processamento.processar(requisicao.request, requisicao.response, (request, response) -> {
+            try {
+                PrintWriter writer = response.getWriter();
+                iniciou.countDown();
+                aguardar(liberar);
+                writer.print("resposta atrasada");
+                writer.flush();
+                response.setStatus(HttpServletResponse.SC_OK);
+            } finally {
+                terminou.countDown();
+            }
+        });
+        assertEquals(200, requisicao.timeout);
+        assertTrue(iniciou.await(5, TimeUnit.SECONDS));
+
+        requisicao.ouvinte.onTimeout(new AsyncEvent(requisicao.contexto));
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, requisicao.status);
+        assertEquals("1", requisicao.cabecalhos.get("Retry-After"));
+        assertEquals(1, requisicao.conclusoes.get());
+
+        liberar.countDown();
+        assertTrue(terminou.await(5, TimeUnit.SECONDS));
+        aguardarVaga(processamento, 1);
+        assertEquals("", requisicao.corpo.toString());
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, requisicao.status);
+        assertEquals(1, requisicao.conclusoes.get());
+    }
+
+    @Test
+    public void timeoutNaFilaNaoExecutaATarefa() throws Exception {
+        final CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService ocupado = Executors.newSingleThreadExecutor();
+        try {
+            ocupado.execute(() -> aguardar(liberar));
+            ProcessamentoAssincrono processamento = new ProcessamentoAssincrono(ocupado, 1, 200);
+            Requisicao requisicao = new Requisicao(null);
+            final AtomicInteger execucoes = new AtomicInteger();
+
+            processamento.processar(requisicao.request, requisicao.response,
+                    (request, response) -> execucoes.incrementAndGet());
+            requisicao.ouvinte.onTimeout(new AsyncEvent(requisicao.contexto));
+            liberar.countDown();
+
+            aguardarVaga(processamento, 1);
+            assertEquals(0, execucoes.get());
+            assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, requisicao.status);
+            assertEquals(1, requisicao.conclusoes.get());
+        } finally {
+            ocupado.shutdownNow();
+        }
+    }
+
+    /*
+     * Um timeout que chega depois de a tarefa concluir a requisição não
+     * altera a resposta nem chama complete() outra vez.
+     */
+    @Test
+    public void timeoutAposConclusaoNaoAlteraResposta() throws Exception {
+        ProcessamentoAssincrono processamento = new ProcessamentoAssincrono(executor, 1);
+        Requisicao requisicao = new Requisicao(null);
+
+        processamento.processar(requisicao.request, requisicao.response,
+                (request, response) -> response.getWriter().print("ok"));
+        assertTrue(requisicao.concluida.await(5, TimeUnit.SECONDS));
+        requisicao.ouvinte.onTimeout(new AsyncEvent(requisicao.contexto));
+
+        assertEquals(ProcessamentoAssincrono.TIMEOUT_PADRAO, requisicao.timeout);
+        assertEquals("ok", requisicao.corpo.toString());
+        assertEquals(0, requisicao.status);
+        assertEquals(1, requisicao.conclusoes.get());
+    }
+
+    /*
+     * Compara a concorrência alcançada com 4 threads de container e
+     * chamadas de 50 ms: no modo síncrono o número de chamadas simultâneas
+     * fica limitado ao pool do container; no assíncrono, ao limite do
+     * ProcessamentoAssincrono.
+     */
+    @Test
+    public void concorrenciaComAtrasoNoBackend() throws Exception {
+        final AtomicInteger simultaneasSincrono = new AtomicInteger();
+        long sincrono = medir(simultaneasSincrono, (requisicao, backend) ->
+                container.execute(() -> {
+                    try {
+                        backend.executar(requisicao.request, requisicao.response);
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    } finally {
+                        requisicao.concluida.countDown();
+                    }
+                }));
+
+        final ProcessamentoAssincrono processamento = new ProcessamentoAssincrono(executor, REQUISICOES);
+        final AtomicInteger simultaneasAssincrono = new AtomicInteger();
+        long assincrono = medir(simultaneasAssincrono, (requisicao, backend) ->
+                container.execute(() -> {
+                    try {
+                        processamento.processar(requisicao.request, requisicao.response, backend);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }));
+
+        System.out.printf("%d requisições de %d ms com %d threads de container:%n"
+                + "  síncrono:   %d ms, %d chamadas simultâneas%n"
+                + "  assíncrono: %d ms, %d chamadas simultâneas%n",
+                REQUISICOES, ATRASO_BACKEND, THREADS_CONTAINER,
+                sincrono, simultaneasSincrono.get(), assincrono, simultaneasAssincrono.get());
+        assertTrue(simultaneasSincrono.get() <= THREADS_CONTAINER);
+        assertTrue(simultaneasAssincrono.get() > THREADS_CONTAINER);
+        assertTrue(assincrono < sincrono);
+    }
+
+    private interface Despacho {
+
+        void despachar(Requisicao requisicao, ProcessamentoAssincrono.Tarefa backend);
+    }
+
+    /*
+     * Envia todas as requisições de uma vez e devolve o tempo até a última
+     * terminar. O máximo de chamadas simultâneas ao backend fica em
+     * simultaneas.
+     */
+    private static long medir(final AtomicInteger simultaneas, Despacho despacho) throws InterruptedException {
+        final AtomicInteger emAndamento = new AtomicInteger();
+        ProcessamentoAssincrono.Tarefa backend = (request, response) -> {
+            simultaneas.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(ATRASO_BACKEND);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                emAndamento.decrementAndGet();
+            }
+        };
+
+        CountDownLatch todas = new CountDownLatch(REQUISICOES);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < REQUISICOES; i++) {
+            despacho.despachar(new Requisicao(todas), backend);
+        }
+        assertTrue(todas.await(30, TimeUnit.SECONDS));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+    }
+
+    private static void aguardar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * A vaga é devolvida logo depois de complete(), na thread do executor.
+     */
+    private static void aguardarVaga(ProcessamentoAssincrono processamento, int vagas) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (processamento.getVagas() != vagas && System.nanoTime() < limite) {
+            Thread.sleep(1);
+        }
+        assertEquals(vagas, processamento.getVagas());
+    }
+
+    private static class Requisicao {
+        private HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final AsyncContext contexto;
+        private final CountDownLatch concluida;
+        private final Map<String, String> cabecalhos = new HashMap<>();
+        private final StringWriter corpo = new StringWriter();
+        private final AtomicInteger conclusoes = new AtomicInteger();
+        private volatile int status;
+        private volatile boolean assincrona;
+        private volatile AsyncListener ouvinte;
+        private volatile long timeout;
+
+        Requisicao(CountDownLatch todas) {
+            final CountDownLatch propria = todas == null ? new CountDownLatch(1) : todas;
+            final PrintWriter writer = new PrintWriter(corpo);
+            concluida = propria;
+            response = criar(HttpServletResponse.class, (p, metodo, args) -> {
+                switch (metodo.getName()) {
+                    case "sendError":
+                    case "setStatus":
+                        status = (Integer) args[0];
+                        return null;
+                    case "setHeader":
+                        cabecalhos.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "getWriter":
+                        return writer;
+                    default:
+                        return null;
+                }
+            });
+            contexto = criar(AsyncContext.class, (p, metodo, args) -> {
+                switch (metodo.getName()) {
+                    case "getRequest":
+                        return request;
+                    case "getResponse":
+                        return response;
+                    case "setTimeout":
+                        timeout = (Long) args[0];
+                        return null;
+                    case "addListener":
+                        ouvinte = (AsyncListener) args[0];
+                        return null;
+                    case "complete":
+                        conclusoes.incrementAndGet();
+                        propria.countDown();
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+            request = criar(HttpServletRequest.class, (p, metodo, args) -> {
+                if (metodo.getName().equals("startAsync")) {
+                    assincrona = true;
+                    return contexto;
+                }
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,9 @@
+CREATE TABLE tb_email_pendente (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    txt_para VARCHAR(255) NOT NULL,
+    nm_tentativas INT NOT NULL,
+    dt_proxima_tentativa TIMESTAMP NOT NULL,
+    txt_situacao VARCHAR(10) NOT NULL,
+    PRIMARY KEY (id)
+);
+CREATE INDEX ix_email_pendente_situacao ON tb_email_pendente (txt_situacao, dt_proxima_tentativa);
@@ -1,24 +1,30 @@
 package ejb.stateful;
 
-import ejb.stateless.ServicoEmailLocal;
+import ejb.stateless.CaixaSaidaEmail;
+import ejb.stateless.ValidacaoUsuario;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import javax.ejb.EJB;
 import javax.ejb.PostActivate;
-import javax.ejb.PrePassivate;
 import javax.ejb.Remove;
 import javax.ejb.Stateful;
 import javax.sql.DataSource;
 
 /**
+ * O bean guarda apenas o estado da conversa (o Usuario em construção).
+ * Nenhuma conexão fica presa durante o tempo em que o usuário preenche o
+ * cadastro: ela é obtida do pool somente dentro de cadastrarUsuario() e
+ * devolvida ao final do método. A transação é a do container (REQUIRED).
+ *
+ * O e-mail de confirmação não é enviado aqui: ele é gravado na caixa de saída
+ * na mesma transação do usuário e enviado depois pelo ServicoEmail. Assim o
+ * cadastro não espera pelo servidor SMTP.
+ *
+ * Na passivação, o único campo gravado é o Usuario, em formato compacto
+ * (ver Usuario.writeExternal).
  *
  * @author MASC
  */
@@ -27,58 +33,43 @@ public class CadastroBean implements CadastroBeanRemote {
 
     @Resource(lookup = "jdbc/ejbDatasource")
     private DataSource ds;
-    @EJB
-    private ServicoEmailLocal servicoEmail;
+    /*
+     * CaixaSaidaEmail não guarda estado e não é Serializable: o campo não
+     * entra na passivação e é recriado na ativação.
+     */
+    private transient CaixaSaidaEmail caixaSaida = new CaixaSaidaEmail();
     
-    private Connection conexao;
     private Usuario usuario;
 
-    @PostConstruct
-    @PostActivate
-    public void inicializar() {
-        try {
-            conexao = ds.getConnection();
-        } catch (SQLException ex) {
-            criarRuntimException(ex);
-        }
-    }
-
     @Remove
     @Override
     public void cadastrarUsuario() {
+        String erro = validar();
+        if (erro != null) {
+            throw new IllegalArgumentException(erro);
+        }
+
         StringBuilder sql = new StringBuilder("INSERT INTO tb_usuario ");
         sql.append("(txt_login, txt_senha, txt_cep, txt_logradouro, nm_numero) ");
         sql.append("VALUES (?, ?, ?, ?, ?)");
-        PreparedStatement pstmt = null;
         Endereco endereco = usuario.getEndereco();
-        try {
-            pstmt = conexao.prepareStatement(sql.toString());
+        try (Connection conexao = ds.getConnection();
+                PreparedStatement pstmt = conexao.prepareStatement(sql.toString())) {
             pstmt.setString(1, usuario.getLogin());
             pstmt.setString(2, usuario.getSenha());
             pstmt.setString(3, endereco.getCep());
             pstmt.setString(4, endereco.getLogradouro());
             pstmt.setInt(5, endereco.getNumero());
-            pstmt.executeUpdate();            
-            conexao.commit();
-            /*
-             * O envio de e-mail será disparado caso o usuário tenha sido criado
-             * com sucesso. O método enviar mensagem é assíncrono no bean de
-             * sessão ServicoEmail.
-             */            
-            Future<Boolean> success = servicoEmail.enviarEmail(usuario.getEmail());
-            try {
-                if(!success.get()) { //Se não houve sucesso, será tentando mais uma vez
-                    servicoEmail.enviarEmail(usuario.getEmail());
-                }
-            } catch (InterruptedException | ExecutionException ex) {
-                Logger.getLogger(CadastroBean.class.getName()).log(Level.SEVERE, null, ex);
+            pstmt.executeUpdate();
+            //O e-mail é opcional no cadastro; sem ele não há confirmação a enviar.
+            if (usuario.getEmail() != null) {
+                caixaSaida.registrar(conexao, usuario.getEmail());
             }
-            
         } catch (SQLException ex) {
-            rollback();
+            /*
+             * A RuntimeException faz o container desfazer a transação.
+             */
             criarRuntimException(ex);
-        } finally {
-            fechar(pstmt);
         }
     }
     
@@ -102,33 +93,25 @@ public class CadastroBean implements CadastroBeanRemote {
         usuario = null;
     }
 
-    private void fechar(PreparedStatement pstmt) throws RuntimeException {
-        try {
-            if (pstmt != null)
-                pstmt.close();
-        } catch (SQLException ex) {
-            criarRuntimException(ex);
-        }
-    }
-
-    private void rollback() throws RuntimeException {
-        try {
-            conexao.rollback();
-        } catch (SQLException ex) {
-            criarRuntimException(ex);
+    /*
+     * Mesma regra do cadastro em lote (CadastroLoteBean). A validação é feita
+     * antes de obter a conexão, para que um cadastro incompleto não ocupe o
+     * pool.
+     */
+    private String validar() {
+        if (usuario == null) {
+            return ValidacaoUsuario.ERRO_LOGIN_SENHA;
         }
+        Endereco endereco = usuario.getEndereco();
+        return endereco == null
+                ? ValidacaoUsuario.validar(usuario.getLogin(), usuario.getSenha(), null, null, null)
+                : ValidacaoUsuario.validar(usuario.getLogin(), usuario.getSenha(),
+                        endereco.getCep(), endereco.getLogradouro(), endereco.getNumero());
     }
 
-    @PreDestroy
-    @PrePassivate
-    public void liberarRecursos() {
-        try {
-            conexao.close();
-            conexao = null;
-            ds = null;
-        } catch (SQLException ex) {
-            criarRuntimException(ex);
-        }
+    @PostActivate
+    private void ativar() {
+        caixaSaida = new CaixaSaidaEmail();
     }
 
     private void criarRuntimException(SQLException ex) throws RuntimeException {
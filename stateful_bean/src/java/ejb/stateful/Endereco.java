@@ -1,12 +1,19 @@
 package ejb.stateful;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
+ * Gravado de forma compacta, como parte de Usuario (ver Usuario).
  *
  * @author MASC
  */
-public class Endereco implements Serializable {
+public class Endereco implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int VERSAO = 1;
+
     private String cep;
     private String logradouro;
     private Integer numero;
@@ -44,6 +51,22 @@ public class Endereco implements Serializable {
     public void setNumero(Integer numero) {
         this.numero = numero;
     }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(VERSAO);
+        Externalizacao.escreverTexto(out, cep);
+        Externalizacao.escreverTexto(out, logradouro);
+        Externalizacao.escreverInteiro(out, numero);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Externalizacao.verificarVersao(in.readByte(), VERSAO, Endereco.class);
+        cep = Externalizacao.lerTexto(in);
+        logradouro = Externalizacao.lerTexto(in);
+        numero = Externalizacao.lerInteiro(in);
+    }
     
     
 }
@@ -0,0 +1,48 @@
+package ejb.stateful;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Rotinas comuns à gravação compacta de Usuario e Endereco. Cada campo
+ * opcional é precedido por um boolean indicando se está preenchido, em vez
+ * do cabeçalho de objeto que a serialização padrão gravaria.
+ *
+ * @author MASC
+ */
+final class Externalizacao {
+
+    private Externalizacao() {
+
+    }
+
+    static void escreverTexto(ObjectOutput out, String valor) throws IOException {
+        out.writeBoolean(valor != null);
+        if (valor != null) {
+            out.writeUTF(valor);
+        }
+    }
+
+    static String lerTexto(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void escreverInteiro(ObjectOutput out, Integer valor) throws IOException {
+        out.writeBoolean(valor != null);
+        if (valor != null) {
+            out.writeInt(valor);
+        }
+    }
+
+    static Integer lerInteiro(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    static void verificarVersao(int versao, int versaoAtual, Class<?> classe) throws IOException {
+        if (versao < 1 || versao > versaoAtual) {
+            throw new InvalidClassException(classe.getName(), "Versão de serialização desconhecida: " + versao);
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package ejb.stateful;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
+ * Estado da conversa do CadastroBean. A gravação é feita por Externalizable
+ * para que a passivação de sessões paradas gere poucos bytes: nenhum
+ * descritor de classe de campos, apenas a versão do formato e os valores.
+ * Ao incluir um campo, incremente VERSAO e continue lendo as versões antigas
+ * em readExternal().
  *
  * @author MASC
  */
-public class Usuario implements Serializable {
+public class Usuario implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int VERSAO = 1;
+
     private String login;
     private String senha;
     private String email;
@@ -57,4 +68,30 @@ public class Usuario implements Serializable {
     public void criarEndereco(String cep, String logradouro, Integer numero) {
         setEndereco(new Endereco(cep, logradouro, numero));
     }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(VERSAO);
+        Externalizacao.escreverTexto(out, login);
+        Externalizacao.escreverTexto(out, senha);
+        Externalizacao.escreverTexto(out, email);
+        out.writeBoolean(endereco != null);
+        if (endereco != null) {
+            endereco.writeExternal(out);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Externalizacao.verificarVersao(in.readByte(), VERSAO, Usuario.class);
+        login = Externalizacao.lerTexto(in);
+        senha = Externalizacao.lerTexto(in);
+        email = Externalizacao.lerTexto(in);
+        if (in.readBoolean()) {
+            endereco = new Endereco();
+            endereco.readExternal(in);
+        } else {
+            endereco = null;
+        }
+    }
 }
@@ -0,0 +1,191 @@
+package ejb.stateless;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionManagement;
+import javax.ejb.TransactionManagementType;
+import javax.sql.DataSource;
+import javax.transaction.UserTransaction;
+
+/**
+ * Cadastro de usuários em lote, para cargas vindas de parceiros. Em vez das
+ * quatro chamadas remotas por usuário do CadastroBean, o cliente envia a
+ * lista inteira de uma vez.
+ *
+ * Os dados de cada usuário passam pela mesma validação do cadastro
+ * interativo (ValidacaoUsuario). Os usuários são gravados em blocos de TAMANHO_BLOCO, cada bloco em sua
+ * própria transação e com um único executeBatch() para tb_usuario e outro
+ * para a caixa de saída de e-mails. Se o lote de um bloco falhar, o bloco é
+ * desfeito e gravado de novo linha a linha, para que apenas os usuários com
+ * problema fiquem de fora.
+ *
+ * Como cada bloco é confirmado separadamente, uma falha que não seja de
+ * dados (conexão, transação) não é propagada ao cliente: os usuários já
+ * gravados continuam com sucesso no resultado e os que não foram processados
+ * recebem uma falha, para que possam ser reenviados. As mensagens devolvidas
+ * não incluem detalhes do banco; estes ficam apenas no log do servidor.
+ *
+ * @author MASC
+ */
+@Stateless
+@TransactionManagement(TransactionManagementType.BEAN)
+public class CadastroLoteBean implements CadastroLoteBeanRemote {
+    private static final int TAMANHO_BLOCO = 500;
+    private static final String SQL_INSERT = "INSERT INTO tb_usuario "
+            + "(txt_login, txt_senha, txt_cep, txt_logradouro, nm_numero) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String ERRO_DUPLICADO = "Login já cadastrado ou dados inválidos";
+    private static final String ERRO_RECUSADO = "Usuário recusado pelo banco de dados";
+    private static final String ERRO_INTERNO = "Cadastro não realizado por erro interno; o usuário pode ser reenviado";
+
+    @Resource(lookup = "jdbc/ejbDatasource")
+    private DataSource ds;
+    @Resource
+    private UserTransaction transacao;
+    private final CaixaSaidaEmail caixaSaida = new CaixaSaidaEmail();
+
+    @Override
+    public List<ResultadoCadastro> cadastrarUsuarios(List<UsuarioDTO> usuarios) {
+        List<ResultadoCadastro> resultados = new ArrayList<>(usuarios.size());
+        try {
+            for (int inicio = 0; inicio < usuarios.size(); inicio += TAMANHO_BLOCO) {
+                List<UsuarioDTO> bloco = usuarios.subList(inicio, Math.min(inicio + TAMANHO_BLOCO, usuarios.size()));
+                cadastrarBloco(bloco, resultados);
+            }
+        } catch (RuntimeException ex) {
+            Logger.getLogger(CadastroLoteBean.class.getName()).log(Level.SEVERE,
+                    "Cadastro em lote interrompido após " + resultados.size() + " usuários", ex);
+        }
+
+        for (int i = resultados.size(); i < usuarios.size(); i++) {
+            resultados.add(new ResultadoCadastro(usuarios.get(i).getLogin(), false, ERRO_INTERNO));
+        }
+        return resultados;
+    }
+
+    /*
+     * Acrescenta a resultados, na ordem do bloco, o resultado de cada usuário.
+     * Se uma falha interromper o bloco, os usuários anteriores a ela já estão
+     * na lista.
+     */
+    private void cadastrarBloco(List<UsuarioDTO> bloco, List<ResultadoCadastro> resultados) {
+        List<UsuarioDTO> validos = new ArrayList<>(bloco.size());
+        String[] erros = new String[bloco.size()];
+        for (int i = 0; i < bloco.size(); i++) {
+            erros[i] = validar(bloco.get(i));
+            if (erros[i] == null) {
+                validos.add(bloco.get(i));
+            }
+        }
+
+        boolean gravado = !validos.isEmpty() && gravarEmLote(validos);
+        for (int i = 0; i < bloco.size(); i++) {
+            UsuarioDTO usuario = bloco.get(i);
+            if (erros[i] != null) {
+                resultados.add(new ResultadoCadastro(usuario.getLogin(), false, erros[i]));
+            } else {
+                resultados.add(gravado
+                        ? new ResultadoCadastro(usuario.getLogin(), true, null)
+                        : gravarIndividualmente(usuario));
+            }
+        }
+    }
+
+    /*
+     * Grava o bloco inteiro em uma transação. Devolve false (com a transação
+     * desfeita) se algum usuário do lote for recusado pelo banco.
+     */
+    private boolean gravarEmLote(List<UsuarioDTO> usuarios) {
+        try {
+            transacao.begin();
+            try (Connection conexao = ds.getConnection();
+                    PreparedStatement pstmt = conexao.prepareStatement(SQL_INSERT)) {
+                List<String> emails = new ArrayList<>(usuarios.size());
+                for (UsuarioDTO usuario : usuarios) {
+                    preencher(pstmt, usuario);
+                    pstmt.addBatch();
+                    //O e-mail é opcional; sem ele não há confirmação a enviar.
+                    if (usuario.getEmail() != null) {
+                        emails.add(usuario.getEmail());
+                    }
+                }
+                pstmt.executeBatch();
+                if (!emails.isEmpty()) {
+                    caixaSaida.registrarTodos(conexao, emails);
+                }
+            }
+            transacao.commit();
+            return true;
+        } catch (BatchUpdateException ex) {
+            desfazer();
+            return false;
+        } catch (Exception ex) {
+            desfazer();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private ResultadoCadastro gravarIndividualmente(UsuarioDTO usuario) {
+        try {
+            transacao.begin();
+            try (Connection conexao = ds.getConnection()) {
+                try (PreparedStatement pstmt = conexao.prepareStatement(SQL_INSERT)) {
+                    preencher(pstmt, usuario);
+                    pstmt.executeUpdate();
+                    if (usuario.getEmail() != null) {
+                        caixaSaida.registrar(conexao, usuario.getEmail());
+                    }
+                } catch (SQLException ex) {
+                    desfazer();
+                    return recusado(usuario, ex);
+                }
+            }
+            transacao.commit();
+            return new ResultadoCadastro(usuario.getLogin(), true, null);
+        } catch (Exception ex) {
+            desfazer();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /*
+     * Violações de integridade (SQLState 23xxx) são problemas do próprio
+     * usuário; o detalhe do banco vai apenas para o log.
+     */
+    private ResultadoCadastro recusado(UsuarioDTO usuario, SQLException ex) {
+        Logger.getLogger(CadastroLoteBean.class.getName()).log(Level.FINE,
+                "Usuário " + usuario.getLogin() + " recusado: " + ex.getMessage(), ex);
+        String estado = ex.getSQLState();
+        String mensagem = estado != null && estado.startsWith("23") ? ERRO_DUPLICADO : ERRO_RECUSADO;
+        return new ResultadoCadastro(usuario.getLogin(), false, mensagem);
+    }
+
+    private void preencher(PreparedStatement pstmt, UsuarioDTO usuario) throws SQLException {
+        pstmt.setString(1, usuario.getLogin());
+        pstmt.setString(2, usuario.getSenha());
+        pstmt.setString(3, usuario.getCep());
+        pstmt.setString(4, usuario.getLogradouro());
+        pstmt.setInt(5, usuario.getNumero());
+    }
+
+    private String validar(UsuarioDTO usuario) {
+        return ValidacaoUsuario.validar(usuario.getLogin(), usuario.getSenha(),
+                usuario.getCep(), usuario.getLogradouro(), usuario.getNumero());
+    }
+
+    private void desfazer() {
+        try {
+            transacao.rollback();
+        } catch (Exception ex) {
+            Logger.getLogger(CadastroLoteBean.class.getName()).log(Level.FINE, ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package ejb.stateless;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caixa de saída de e-mails (tabela tb_email_pendente, veja setup/create.sql).
+ *
+ * Quem precisa enviar um e-mail apenas grava uma linha nesta tabela, usando a
+ * mesma conexão (e, portanto, a mesma transação) do restante do trabalho. O
+ * envio de fato é feito depois pelo ServicoEmail, que lê as linhas pendentes
+ * e aplica backoff exponencial às que falharem.
+ *
+ * @author MASC
+ */
+public class CaixaSaidaEmail {
+    /**
+     * Quantidade de tentativas após a qual o e-mail é marcado como falho.
+     */
+    public static final int MAXIMO_TENTATIVAS = 8;
+    private static final long ESPERA_INICIAL = 30 * 1000L;
+
+    /**
+     * E-mail pendente lido da caixa de saída.
+     */
+    public static class Pendente {
+        private final long id;
+        private final String para;
+        private final int tentativas;
+
+        Pendente(long id, String para, int tentativas) {
+            this.id = id;
+            this.para = para;
+            this.tentativas = tentativas;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getPara() {
+            return para;
+        }
+
+        public int getTentativas() {
+            return tentativas;
+        }
+    }
+
+    public void registrar(Connection conexao, String para) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO tb_email_pendente ");
+        sql.append("(txt_para, nm_tentativas, dt_proxima_tentativa, txt_situacao) ");
+        sql.append("VALUES (?, 0, ?, 'PENDENTE')");
+        try (PreparedStatement pstmt = conexao.prepareStatement(sql.toString())) {
+            pstmt.setString(1, para);
+            pstmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Grava vários e-mails com um único executeBatch().
+     */
+    public void registrarTodos(Connection conexao, List<String> destinatarios) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO tb_email_pendente ");
+        sql.append("(txt_para, nm_tentativas, dt_proxima_tentativa, txt_situacao) ");
+        sql.append("VALUES (?, 0, ?, 'PENDENTE')");
+        Timestamp agora = new Timestamp(System.currentTimeMillis());
+        try (PreparedStatement pstmt = conexao.prepareStatement(sql.toString())) {
+            for (String para : destinatarios) {
+                pstmt.setString(1, para);
+                pstmt.setTimestamp(2, agora);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Reserva até limite e-mails cuja próxima tentativa já venceu, marcando-os
+     * como ENVIANDO com prazo de reserva. As linhas são lidas com FOR UPDATE,
+     * para que dois processamentos simultâneos não reservem o mesmo e-mail.
+     *
+     * Quem chama deve confirmar a transação logo em seguida, antes de enviar:
+     * assim nenhum bloqueio fica preso durante a conversa com o servidor SMTP.
+     * Uma reserva que não for confirmada nem marcada como falha (queda do
+     * servidor durante o envio) volta a ser elegível quando o prazo vence.
+     */
+    public List<Pendente> reservarPendentes(Connection conexao, int limite, long prazoReserva) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id, txt_para, nm_tentativas FROM tb_email_pendente ");
+        sql.append("WHERE txt_situacao IN ('PENDENTE', 'ENVIANDO') AND dt_proxima_tentativa <= ? ");
+        sql.append("ORDER BY id LIMIT ? FOR UPDATE");
+        long agora = System.currentTimeMillis();
+        List<Pendente> pendentes = new ArrayList<>();
+        try (PreparedStatement pstmt = conexao.prepareStatement(sql.toString())) {
+            pstmt.setTimestamp(1, new Timestamp(agora));
+            pstmt.setInt(2, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    pendentes.add(new Pendente(rs.getLong("id"), rs.getString("txt_para"), rs.getInt("nm_tentativas")));
+                }
+            }
+        }
+        if (pendentes.isEmpty()) {
+            return pendentes;
+        }
+
+        sql = new StringBuilder("UPDATE tb_email_pendente ");
+        sql.append("SET txt_situacao = 'ENVIANDO', dt_proxima_tentativa = ? WHERE id = ?");
+        Timestamp vencimento = new Timestamp(agora + prazoReserva);
+        try (PreparedStatement pstmt = conexao.prepareStatement(sql.toString())) {
+            for (Pendente pendente : pendentes) {
+                pstmt.setTimestamp(1, vencimento);
+                pstmt.setLong(2, pendente.getId());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        return pendentes;
+    }
+
+    public void confirmarEnvio(Connection conexao, Pendente pendente) throws SQLException {
+        try (PreparedStatement pstmt = conexao.prepareStatement("DELETE FROM tb_email_pendente WHERE id = ?")) {
+            pstmt.setLong(1, pendente.getId());
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Agenda a próxima tentativa com espera exponencial (30s, 1min, 2min, ...)
+     * ou, esgotadas as tentativas, marca o e-mail como falho.
+     */
+    public void registrarFalha(Connection conexao, Pendente pendente) throws SQLException {
+        int tentativas = pendente.getTentativas() + 1;
+        long espera = ESPERA_INICIAL << Math.min(tentativas - 1, 20);
+        StringBuilder sql = new StringBuilder("UPDATE tb_email_pendente ");
+        sql.append("SET nm_tentativas = ?, dt_proxima_tentativa = ?, txt_situacao = ? WHERE id = ?");
+        try (PreparedStatement pstmt = conexao.prepareStatement(sql.toString())) {
+            pstmt.setInt(1, tentativas);
+            pstmt.setTimestamp(2, new Timestamp(System.currentTimeMillis() + espera));
+            pstmt.setString(3, tentativas >= MAXIMO_TENTATIVAS ? "FALHA" : "PENDENTE");
+            pstmt.setLong(4, pendente.getId());
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ejb.stateless;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.AsyncResult;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.sql.DataSource;
+
+/**
+ * Executor exclusivo do envio de e-mails, com quantidade fixa de threads e
+ * fila limitada. O ServicoEmail.processarPendentes() reserva os e-mails da
+ * caixa de saída (tb_email_pendente) e os entrega a este executor, que envia
+ * até "threadsEmail" deles em paralelo sem ocupar o pool assíncrono padrão
+ * do container.
+ *
+ * Cada tarefa grava o resultado do próprio envio: remove o e-mail da caixa
+ * de saída ou registra a falha, com espera exponencial. Um e-mail que não
+ * chega a ser enviado (fila cheia, desligamento do servidor) continua
+ * reservado na caixa de saída e volta a ser processado quando o prazo da
+ * reserva vencer; nenhum e-mail existe apenas na memória do executor.
+ *
+ * As threads vêm do ManagedThreadFactory do container, portanto enxergam o
+ * contexto de nomes da aplicação e podem chamar o ServicoEmail.
+ *
+ * @author MASC
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ExecutorEmail {
+    /*
+     * Tempo que o desligamento espera pelos envios em andamento e pelos que
+     * ainda estão na fila.
+     */
+    private static final long PRAZO_FINALIZACAO = 30;
+
+    @Resource
+    private ManagedThreadFactory fabricaThreads;
+    @Resource(lookup = "jdbc/ejbDatasource")
+    private DataSource ds;
+    @EJB
+    private ServicoEmailLocal servicoEmail;
+    @EJB
+    private MetricasEmail metricas;
+    /*
+     * Podem ser alterados no deploy por meio das env-entries
+     * "threadsEmail" e "capacidadeFilaEmail".
+     */
+    @Resource(name = "threadsEmail")
+    private Integer threads = 4;
+    @Resource(name = "capacidadeFilaEmail")
+    private Integer capacidadeFila = 1000;
+
+    private final CaixaSaidaEmail caixaSaida = new CaixaSaidaEmail();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void inicializar() {
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(capacidadeFila), fabricaThreads,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Enfileira o envio de um e-mail reservado na caixa de saída.
+     *
+     * @return Future com o resultado do envio. Se a fila estiver cheia, o
+     * Future já vem concluído com false e o e-mail continua reservado.
+     */
+    public Future<Boolean> submeter(final CaixaSaidaEmail.Pendente pendente) {
+        final long enfileirado = System.nanoTime();
+        FutureTask<Boolean> envio = new FutureTask<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                metricas.registrarEsperaFila(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enfileirado));
+                boolean enviado = servicoEmail.enviarAgora(pendente.getPara());
+                registrarResultado(pendente, enviado);
+                return enviado;
+            }
+        });
+        try {
+            executor.execute(envio);
+            return envio;
+        } catch (RejectedExecutionException ex) {
+            metricas.registrarTransbordo();
+            return new AsyncResult<>(false);
+        }
+    }
+
+    /**
+     * @return quantidade de e-mails aguardando uma thread livre.
+     */
+    public int getProfundidadeFila() {
+        return executor.getQueue().size();
+    }
+
+    /*
+     * Fora de uma transação JTA, cada comando é confirmado isoladamente
+     * (autocommit). Se a gravação falhar, o e-mail continua reservado e volta
+     * a ser processado quando o prazo da reserva vencer.
+     */
+    private void registrarResultado(CaixaSaidaEmail.Pendente pendente, boolean enviado) {
+        try (Connection conexao = ds.getConnection()) {
+            if (enviado) {
+                caixaSaida.confirmarEnvio(conexao, pendente);
+            } else {
+                caixaSaida.registrarFalha(conexao, pendente);
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(ExecutorEmail.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+
+    /*
+     * Deixa os envios em andamento e os da fila terminarem. Os que não
+     * terminarem no prazo são interrompidos; como continuam reservados na
+     * caixa de saída, serão enviados depois do próximo deploy.
+     */
+    @PreDestroy
+    public void finalizar() {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(PRAZO_FINALIZACAO, TimeUnit.SECONDS)) {
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        int restantes = executor.shutdownNow().size();
+        Logger.getLogger(ExecutorEmail.class.getName()).log(Level.WARNING,
+                "{0} e-mails não enviados no desligamento continuam na caixa de saída", restantes);
+    }
+}
@@ -0,0 +1,96 @@
+package ejb.stateless;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+
+/**
+ * Contadores do envio de e-mails, compartilhados por todas as instâncias do
+ * ServicoEmail. Os contadores são atômicos, por isso o bean não precisa do
+ * bloqueio do container.
+ *
+ * @author MASC
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class MetricasEmail {
+    private final long inicio = System.nanoTime();
+    private final AtomicLong mensagensEnviadas = new AtomicLong();
+    private final AtomicLong conexoesAbertas = new AtomicLong();
+    private final AtomicLong transbordos = new AtomicLong();
+    private final AtomicLong esperasFila = new AtomicLong();
+    private final AtomicLong tempoTotalFila = new AtomicLong();
+    private final AtomicLong maiorEsperaFila = new AtomicLong();
+
+    public void registrarEnvio() {
+        mensagensEnviadas.incrementAndGet();
+    }
+
+    public void registrarConexao() {
+        conexoesAbertas.incrementAndGet();
+    }
+
+    /**
+     * Registra um e-mail que encontrou a fila do ExecutorEmail cheia e ficou
+     * reservado na caixa de saída até o prazo da reserva vencer.
+     */
+    public void registrarTransbordo() {
+        transbordos.incrementAndGet();
+    }
+
+    /**
+     * Registra quanto tempo um e-mail esperou na fila do ExecutorEmail até
+     * começar a ser enviado.
+     */
+    public void registrarEsperaFila(long milissegundos) {
+        esperasFila.incrementAndGet();
+        tempoTotalFila.addAndGet(milissegundos);
+        long maior;
+        do {
+            maior = maiorEsperaFila.get();
+        } while (milissegundos > maior && !maiorEsperaFila.compareAndSet(maior, milissegundos));
+    }
+
+    public long getTransbordos() {
+        return transbordos.get();
+    }
+
+    public double getEsperaMediaFila() {
+        long quantidade = esperasFila.get();
+        return quantidade > 0 ? tempoTotalFila.get() / (double) quantidade : 0;
+    }
+
+    public long getMaiorEsperaFila() {
+        return maiorEsperaFila.get();
+    }
+
+    public long getMensagensEnviadas() {
+        return mensagensEnviadas.get();
+    }
+
+    public long getConexoesAbertas() {
+        return conexoesAbertas.get();
+    }
+
+    /**
+     * @return média de mensagens enviadas por segundo desde a inicialização.
+     */
+    public double getMensagensPorSegundo() {
+        double segundos = (System.nanoTime() - inicio) / (double) TimeUnit.SECONDS.toNanos(1);
+        return segundos > 0 ? mensagensEnviadas.get() / segundos : 0;
+    }
+
+    /**
+     * @return fração das mensagens enviadas sem abrir uma nova conexão SMTP
+     * (0 quando cada mensagem abre a sua conexão; perto de 1 quando as
+     * conexões são bem reaproveitadas).
+     */
+    public double getTaxaReusoConexao() {
+        long mensagens = mensagensEnviadas.get();
+        return mensagens > 0 ? Math.max(0, 1 - conexoesAbertas.get() / (double) mensagens) : 0;
+    }
+}
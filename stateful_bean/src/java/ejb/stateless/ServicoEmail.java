@@ -1,39 +1,121 @@
 package ejb.stateless;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import javax.ejb.AsyncResult;
-import javax.ejb.Asynchronous;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.mail.Address;
 import javax.mail.Message;
 import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
 import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
+import javax.sql.DataSource;
 
 /**
+ * Cada instância do pool de beans mantém a sua própria conexão SMTP
+ * (Transport), aberta na primeira mensagem e reaproveitada nas seguintes
+ * que as threads do ExecutorEmail enviarem por ela. Se a conexão tiver caído
+ * ou o servidor a tiver encerrado por inatividade, ela é aberta de novo e o
+ * envio é repetido uma vez. Recusas do servidor não são repetidas.
  *
  * @author MASC
  */
 @Stateless
 public class ServicoEmail implements ServicoEmailLocal {
+    private static final int LOTE = 50;
+    private static final long PRAZO_RESERVA = 5 * 60 * 1000L;
+
     @Resource(name = "mail/servicoEmailSession")
     private Session sessao;
-    
-    @Override
-    @Asynchronous
-    public void enviarMensagem(String para) {
-        enviar(para);
+    @Resource(lookup = "jdbc/ejbDatasource")
+    private DataSource ds;
+    @EJB
+    private MetricasEmail metricas;
+    @EJB
+    private ExecutorEmail executor;
+    private final CaixaSaidaEmail caixaSaida = new CaixaSaidaEmail();
+    private Transport transporte;
+
+    /**
+     * Esvazia periodicamente a caixa de saída (tb_email_pendente). Os e-mails
+     * são reservados em uma transação curta, confirmada antes de qualquer
+     * envio, e entregues ao ExecutorEmail, que os envia em paralelo; depois
+     * do envio, cada e-mail é removido (ou reagendado com espera exponencial,
+     * se falhou) em sua própria transação. Nenhum bloqueio fica preso
+     * enquanto o servidor SMTP responde.
+     */
+    @Schedule(second = "*/15", minute = "*", hour = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void processarPendentes() {
+        List<CaixaSaidaEmail.Pendente> pendentes;
+        try {
+            pendentes = reservarPendentes();
+        } catch (SQLException ex) {
+            Logger.getLogger(ServicoEmail.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+
+        List<Future<Boolean>> envios = new ArrayList<>(pendentes.size());
+        for (CaixaSaidaEmail.Pendente pendente : pendentes) {
+            envios.add(executor.submeter(pendente));
+        }
+
+        /*
+         * Espera o lote terminar antes de liberar o timer, para que a próxima
+         * execução não acumule tarefas na fila do executor.
+         */
+        for (Future<Boolean> envio : envios) {
+            try {
+                envio.get();
+            } catch (ExecutionException ex) {
+                Logger.getLogger(ServicoEmail.class.getName()).log(Level.SEVERE, ex.getMessage(), ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<CaixaSaidaEmail.Pendente> reservarPendentes() throws SQLException {
+        try (Connection conexao = ds.getConnection()) {
+            conexao.setAutoCommit(false);
+            try {
+                List<CaixaSaidaEmail.Pendente> pendentes = caixaSaida.reservarPendentes(conexao, LOTE, PRAZO_RESERVA);
+                conexao.commit();
+                return pendentes;
+            } catch (SQLException ex) {
+                conexao.rollback();
+                throw ex;
+            } finally {
+                conexao.setAutoCommit(true);
+            }
+        }
     }
-    
+
+    /**
+     * Envia o e-mail na thread de quem chama. Usado pelas threads do
+     * ExecutorEmail.
+     */
     @Override
-    @Asynchronous
-    public Future<Boolean> enviarEmail(String para) {
-        return new AsyncResult<>(enviar(para));
+    public boolean enviarAgora(String para) {
+        return enviar(para);
     }
+
     private boolean enviar(String para) {
         try {
             Message message = new MimeMessage(sessao);
@@ -42,11 +124,75 @@ public class ServicoEmail implements ServicoEmailLocal {
                     InternetAddress.parse(para));
             message.setSubject("Cadastro realizado com sucesso");
             message.setText("Cadastro realizado com sucesso. E-mail automático.");
-            Transport.send(message);
+            message.saveChanges();
+            enviar(message);
             return true;
         } catch (MessagingException ex) {
             Logger.getLogger(ServicoEmail.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
             return false;
         }
     }
+
+    private void enviar(Message message) throws MessagingException {
+        try {
+            conectar().sendMessage(message, message.getAllRecipients());
+        } catch (MessagingException ex) {
+            if (!conexaoPerdida(ex)) {
+                throw ex;
+            }
+            /*
+             * A conexão foi encerrada pelo servidor entre a verificação e o
+             * envio: tenta uma vez mais com uma conexão nova.
+             */
+            desconectar();
+            conectar().sendMessage(message, message.getAllRecipients());
+        }
+        metricas.registrarEnvio();
+    }
+
+    /*
+     * Só a queda da conexão justifica repetir o envio. Uma recusa do servidor
+     * (SendFailedException com endereços inválidos ou já entregues) não é
+     * repetida: parte dos destinatários pode já ter recebido a mensagem. O
+     * e-mail volta para a caixa de saída, que o reagenda.
+     */
+    private boolean conexaoPerdida(MessagingException ex) {
+        if (ex instanceof SendFailedException) {
+            SendFailedException recusa = (SendFailedException) ex;
+            if (possui(recusa.getInvalidAddresses()) || possui(recusa.getValidSentAddresses())) {
+                return false;
+            }
+        }
+        return ex.getNextException() instanceof IOException || transporte == null || !transporte.isConnected();
+    }
+
+    private static boolean possui(Address[] enderecos) {
+        return enderecos != null && enderecos.length > 0;
+    }
+
+    /*
+     * Devolve a conexão desta instância, abrindo-a se ainda não existir ou se
+     * não estiver mais ativa (isConnected() envia um NOOP ao servidor).
+     */
+    private Transport conectar() throws MessagingException {
+        if (transporte == null || !transporte.isConnected()) {
+            desconectar();
+            transporte = sessao.getTransport();
+            transporte.connect();
+            metricas.registrarConexao();
+        }
+        return transporte;
+    }
+
+    @PreDestroy
+    public void desconectar() {
+        if (transporte != null) {
+            try {
+                transporte.close();
+            } catch (MessagingException ex) {
+                Logger.getLogger(ServicoEmail.class.getName()).log(Level.FINE, ex.getMessage(), ex);
+            }
+            transporte = null;
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package ejb.stateless;
+
+/**
+ * Regra de validação dos dados de cadastro, a mesma para o cadastro
+ * interativo (CadastroBean) e para o cadastro em lote (CadastroLoteBean):
+ * login, senha e endereço completo são obrigatórios; o e-mail é opcional e,
+ * sem ele, não há confirmação a enviar.
+ *
+ * @author MASC
+ */
+public final class ValidacaoUsuario {
+    public static final String ERRO_LOGIN_SENHA = "Login e senha são obrigatórios";
+    public static final String ERRO_ENDERECO = "Endereço incompleto";
+
+    private ValidacaoUsuario() {
+
+    }
+
+    /**
+     * @return a mensagem de erro ou null, se os dados forem válidos.
+     */
+    public static String validar(String login, String senha, String cep, String logradouro, Integer numero) {
+        if (login == null || senha == null) {
+            return ERRO_LOGIN_SENHA;
+        }
+        if (cep == null || logradouro == null || numero == null) {
+            return ERRO_ENDERECO;
+        }
+        return null;
+    }
+}
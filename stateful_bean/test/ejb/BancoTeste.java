@@ -0,0 +1,302 @@
+package ejb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+import javax.transaction.NotSupportedException;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.UserTransaction;
+
+/**
+ * Banco H2 em memória, em modo MySQL, com as tabelas usadas pelos beans:
+ * tb_usuario e as do script setup/create.sql. O DataSource conta as
+ * conexões abertas, para que os testes verifiquem quantas conexões do pool
+ * cada caminho ocupa.
+ *
+ * A UserTransaction de getTransacao() faz o papel da transação do container
+ * para os beans com transação gerenciada pelo bean: entre begin() e
+ * commit()/rollback(), todas as conexões obtidas do DataSource pela mesma
+ * thread são a mesma conexão física, sem auto-commit.
+ *
+ * @author MASC
+ */
+public class BancoTeste {
+    private static final AtomicInteger SEQUENCIA = new AtomicInteger();
+    private static final String TB_USUARIO = "CREATE TABLE tb_usuario ("
+            + "id BIGINT NOT NULL AUTO_INCREMENT, "
+            + "txt_login VARCHAR(50) NOT NULL, "
+            + "txt_senha VARCHAR(50) NOT NULL, "
+            + "txt_cep VARCHAR(10), "
+            + "txt_logradouro VARCHAR(100), "
+            + "nm_numero INT, "
+            + "PRIMARY KEY (id), "
+            + "UNIQUE (txt_login))";
+
+    private final String url;
+    private final AtomicInteger abertas = new AtomicInteger();
+    private final AtomicInteger maximoAbertas = new AtomicInteger();
+    private final DataSource dataSource = new FonteDados();
+    private final UserTransaction transacao = new Transacao();
+    private final ThreadLocal<Connection> conexaoTransacao = new ThreadLocal<>();
+
+    public BancoTeste() throws SQLException, IOException {
+        url = "jdbc:h2:mem:teste" + SEQUENCIA.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        String script = new String(Files.readAllBytes(new File("setup/create.sql").toPath()), StandardCharsets.UTF_8);
+        try (Connection conexao = DriverManager.getConnection(url);
+                Statement stmt = conexao.createStatement()) {
+            stmt.execute(TB_USUARIO);
+            for (String comando : script.split(";")) {
+                if (!comando.trim().isEmpty()) {
+                    stmt.execute(comando);
+                }
+            }
+        }
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public UserTransaction getTransacao() {
+        return transacao;
+    }
+
+    /**
+     * @return conexões obtidas do DataSource e ainda não fechadas.
+     */
+    public int getConexoesAbertas() {
+        return abertas.get();
+    }
+
+    /**
+     * @return maior quantidade de conexões abertas ao mesmo tempo desde a
+     * criação do banco ou desde a última chamada a zerarMaximo().
+     */
+    public int getMaximoConexoesAbertas() {
+        return maximoAbertas.get();
+    }
+
+    public void zerarMaximo() {
+        maximoAbertas.set(abertas.get());
+    }
+
+    public long contar(String sql, Object... parametros) throws SQLException {
+        try (Connection conexao = DriverManager.getConnection(url);
+                PreparedStatement pstmt = conexao.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.length; i++) {
+                pstmt.setObject(i + 1, parametros[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    public int executar(String sql, Object... parametros) throws SQLException {
+        try (Connection conexao = DriverManager.getConnection(url);
+                PreparedStatement pstmt = conexao.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.length; i++) {
+                pstmt.setObject(i + 1, parametros[i]);
+            }
+            return pstmt.executeUpdate();
+        }
+    }
+
+    public void fechar() throws SQLException {
+        try (Connection conexao = DriverManager.getConnection(url);
+                Statement stmt = conexao.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+    }
+
+    private Connection abrir() throws SQLException {
+        final Connection conexao = DriverManager.getConnection(url);
+        int atual = abertas.incrementAndGet();
+        int maximo;
+        do {
+            maximo = maximoAbertas.get();
+        } while (atual > maximo && !maximoAbertas.compareAndSet(maximo, atual));
+
+        return (Connection) Proxy.newProxyInstance(BancoTeste.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    private boolean fechada;
+
+                    @Override
+                    public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+                        if (metodo.getName().equals("close")) {
+                            if (!fechada) {
+                                fechada = true;
+                                abertas.decrementAndGet();
+                            }
+                        }
+                        try {
+                            return metodo.invoke(conexao, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+                });
+    }
+
+    /*
+     * Dentro de uma transação, devolve a conexão da transação; o close() de
+     * quem a usa não a fecha, como no pool do container.
+     */
+    private Connection obter() throws SQLException {
+        final Connection conexao = conexaoTransacao.get();
+        if (conexao == null) {
+            return abrir();
+        }
+
+        return (Connection) Proxy.newProxyInstance(BancoTeste.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+                        if (metodo.getName().equals("close")) {
+                            return null;
+                        }
+                        try {
+                            return metodo.invoke(conexao, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+                });
+    }
+
+    private class Transacao implements UserTransaction {
+        private final ThreadLocal<Boolean> somenteDesfazer = new ThreadLocal<>();
+
+        @Override
+        public void begin() throws NotSupportedException, SystemException {
+            if (conexaoTransacao.get() != null) {
+                throw new NotSupportedException("Transação já iniciada");
+            }
+            try {
+                Connection conexao = abrir();
+                conexao.setAutoCommit(false);
+                conexaoTransacao.set(conexao);
+                somenteDesfazer.remove();
+            } catch (SQLException ex) {
+                throw new SystemException(ex.getMessage());
+            }
+        }
+
+        @Override
+        public void commit() throws RollbackException, SystemException {
+            if (Boolean.TRUE.equals(somenteDesfazer.get())) {
+                rollback();
+                throw new RollbackException("Transação marcada para desfazer");
+            }
+            try (Connection conexao = encerrar()) {
+                conexao.commit();
+            } catch (SQLException ex) {
+                throw new SystemException(ex.getMessage());
+            }
+        }
+
+        @Override
+        public void rollback() throws SystemException {
+            try (Connection conexao = encerrar()) {
+                conexao.rollback();
+            } catch (SQLException ex) {
+                throw new SystemException(ex.getMessage());
+            }
+        }
+
+        @Override
+        public void setRollbackOnly() throws SystemException {
+            if (conexaoTransacao.get() == null) {
+                throw new IllegalStateException("Nenhuma transação ativa");
+            }
+            somenteDesfazer.set(true);
+        }
+
+        @Override
+        public int getStatus() {
+            if (conexaoTransacao.get() == null) {
+                return Status.STATUS_NO_TRANSACTION;
+            }
+            return Boolean.TRUE.equals(somenteDesfazer.get()) ? Status.STATUS_MARKED_ROLLBACK : Status.STATUS_ACTIVE;
+        }
+
+        @Override
+        public void setTransactionTimeout(int segundos) {
+        }
+
+        private Connection encerrar() {
+            Connection conexao = conexaoTransacao.get();
+            if (conexao == null) {
+                throw new IllegalStateException("Nenhuma transação ativa");
+            }
+            conexaoTransacao.remove();
+            somenteDesfazer.remove();
+            return conexao;
+        }
+    }
+
+    private class FonteDados implements DataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return obter();
+        }
+
+        @Override
+        public Connection getConnection(String usuario, String senha) throws SQLException {
+            return obter();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int segundos) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> tipo) throws SQLException {
+            throw new SQLException("Não é um wrapper");
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> tipo) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ejb;
+
+import java.lang.reflect.Field;
+
+/**
+ * Preenche os campos que o container injetaria (@Resource, @EJB) nos beans
+ * criados pelos testes sem container.
+ *
+ * @author MASC
+ */
+public final class Injecao {
+
+    private Injecao() {
+
+    }
+
+    public static <T> T injetar(T bean, String campo, Object valor) {
+        for (Class<?> classe = bean.getClass(); classe != null; classe = classe.getSuperclass()) {
+            try {
+                Field field = classe.getDeclaredField(campo);
+                field.setAccessible(true);
+                field.set(bean, valor);
+                return bean;
+            } catch (NoSuchFieldException ex) {
+                //Procura na superclasse.
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        throw new IllegalArgumentException(bean.getClass().getName() + " não tem o campo " + campo);
+    }
+}
@@ -0,0 +1,219 @@
+package ejb;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.mail.Session;
+
+/**
+ * Servidor SMTP mínimo, na própria JVM, para os testes do envio de
+ * e-mails. Aceita qualquer remetente, recusa (550) os destinatários
+ * indicados em recusar() e guarda os destinatários de cada mensagem
+ * recebida. A latência simula a ida e volta a um servidor real em cada
+ * comando.
+ *
+ * @author MASC
+ */
+public class ServidorSmtp implements AutoCloseable {
+    private final ServerSocket servidor;
+    private final List<String> entregues = new CopyOnWriteArrayList<>();
+    private final Set<String> recusados = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<Socket> clientes = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private final AtomicInteger conexoes = new AtomicInteger();
+    private volatile long latencia;
+    private volatile long latenciaConexao;
+    private final AtomicBoolean derrubarEnvio = new AtomicBoolean();
+
+    public ServidorSmtp() throws IOException {
+        servidor = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread aceitacao = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                aceitar();
+            }
+        }, "smtp-teste");
+        aceitacao.setDaemon(true);
+        aceitacao.start();
+    }
+
+    /**
+     * @return sessão do JavaMail apontando para este servidor.
+     */
+    public Session criarSessao() {
+        Properties propriedades = new Properties();
+        propriedades.setProperty("mail.transport.protocol", "smtp");
+        propriedades.setProperty("mail.smtp.host", servidor.getInetAddress().getHostAddress());
+        propriedades.setProperty("mail.smtp.port", String.valueOf(servidor.getLocalPort()));
+        propriedades.setProperty("mail.smtp.connectiontimeout", "5000");
+        propriedades.setProperty("mail.smtp.timeout", "5000");
+        return Session.getInstance(propriedades);
+    }
+
+    public void recusar(String endereco) {
+        recusados.add(endereco);
+    }
+
+    /**
+     * @param milissegundos espera antes de cada resposta do servidor.
+     */
+    public void setLatencia(long milissegundos) {
+        latencia = milissegundos;
+    }
+
+    /**
+     * @param milissegundos espera antes da saudação de cada nova conexão,
+     * no lugar do custo de abri-la (TCP, TLS e autenticação).
+     */
+    public void setLatenciaConexao(long milissegundos) {
+        latenciaConexao = milissegundos;
+    }
+
+    /**
+     * Encerra a conexão que enviar o próximo MAIL FROM, sem responder: o
+     * cliente só percebe a queda no meio do envio.
+     */
+    public void derrubarNoProximoEnvio() {
+        derrubarEnvio.set(true);
+    }
+
+    /**
+     * @return destinatários das mensagens entregues, na ordem de chegada.
+     */
+    public List<String> getEntregues() {
+        return new ArrayList<>(entregues);
+    }
+
+    /**
+     * @return conexões aceitas desde a criação do servidor.
+     */
+    public int getConexoes() {
+        return conexoes.get();
+    }
+
+    /**
+     * Encerra as conexões abertas, como faz um servidor com as conexões
+     * ociosas. Os clientes só percebem no próximo comando.
+     */
+    public void derrubarConexoes() throws IOException {
+        for (Socket cliente : clientes) {
+            cliente.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        servidor.close();
+        derrubarConexoes();
+    }
+
+    private void aceitar() {
+        while (!servidor.isClosed()) {
+            try {
+                final Socket cliente = servidor.accept();
+                conexoes.incrementAndGet();
+                clientes.add(cliente);
+                Thread atendimento = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        atender(cliente);
+                    }
+                }, "smtp-teste-cliente");
+                atendimento.setDaemon(true);
+                atendimento.start();
+            } catch (IOException ex) {
+                //Servidor fechado.
+            }
+        }
+    }
+
+    private void atender(Socket cliente) {
+        try (Socket socket = cliente;
+                BufferedReader entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream saida = socket.getOutputStream()) {
+            esperar(latenciaConexao);
+            responder(saida, "220 localhost ESMTP");
+            List<String> destinatarios = new ArrayList<>();
+            String linha;
+            while ((linha = entrada.readLine()) != null) {
+                String comando = linha.length() >= 4 ? linha.substring(0, 4).toUpperCase() : linha.toUpperCase();
+                switch (comando) {
+                    case "EHLO":
+                    case "HELO":
+                        responder(saida, "250 localhost");
+                        break;
+                    case "MAIL":
+                        if (derrubarEnvio.compareAndSet(true, false)) {
+                            return;
+                        }
+                        destinatarios.clear();
+                        responder(saida, "250 OK");
+                        break;
+                    case "RCPT":
+                        String endereco = linha.substring(linha.indexOf('<') + 1, linha.indexOf('>'));
+                        if (recusados.contains(endereco)) {
+                            responder(saida, "550 No such user");
+                        } else {
+                            destinatarios.add(endereco);
+                            responder(saida, "250 OK");
+                        }
+                        break;
+                    case "DATA":
+                        responder(saida, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((linha = entrada.readLine()) != null && !linha.equals(".")) {
+                            //Descarta o conteúdo da mensagem.
+                        }
+                        entregues.addAll(destinatarios);
+                        destinatarios.clear();
+                        responder(saida, "250 OK");
+                        break;
+                    case "RSET":
+                        destinatarios.clear();
+                        responder(saida, "250 OK");
+                        break;
+                    case "NOOP":
+                        responder(saida, "250 OK");
+                        break;
+                    case "QUIT":
+                        responder(saida, "221 Bye");
+                        return;
+                    default:
+                        responder(saida, "502 Command not implemented");
+                }
+            }
+        } catch (IOException ex) {
+            //Conexão encerrada pelo cliente ou por derrubarConexoes().
+        } finally {
+            clientes.remove(cliente);
+        }
+    }
+
+    private void responder(OutputStream saida, String resposta) throws IOException {
+        esperar(latencia);
+        saida.write((resposta + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        saida.flush();
+    }
+
+    private static void esperar(long milissegundos) {
+        if (milissegundos > 0) {
+            try {
+                Thread.sleep(milissegundos);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ejb.stateful;
+
+import ejb.BancoTeste;
+import ejb.Injecao;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes do CadastroBean sem container, sobre o banco em memória do
+ * BancoTeste. O bean é criado e recebe o DataSource como o container faria.
+ *
+ * @author MASC
+ */
+public class CadastroBeanTest {
+    private static final int THREADS = 8;
+
+    private BancoTeste banco;
+
+    @Before
+    public void setUp() throws Exception {
+        banco = new BancoTeste();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        banco.fechar();
+    }
+
+    @Test
+    public void cadastraUsuarioEGravaEmailNaCaixaDeSaida() throws Exception {
+        CadastroBean bean = criarBean();
+        bean.criarUsuario("masc", "senha", "masc@gmail.com");
+        bean.criarEnderecoUsuario("50670-210", "Rua Ribeirão", 20);
+        bean.cadastrarUsuario();
+
+        assertEquals(1, banco.contar("SELECT COUNT(*) FROM tb_usuario WHERE txt_login = ?", "masc"));
+        assertEquals(1, banco.contar("SELECT COUNT(*) FROM tb_email_pendente WHERE txt_para = ?", "masc@gmail.com"));
+        assertEquals(0, banco.getConexoesAbertas());
+    }
+
+    @Test
+    public void semEmailNaoGravaNaCaixaDeSaida() throws Exception {
+        CadastroBean bean = criarBean();
+        bean.criarUsuario("masc", "senha", null);
+        bean.criarEnderecoUsuario("50670-210", "Rua Ribeirão", 20);
+        bean.cadastrarUsuario();
+
+        assertEquals(1, banco.contar("SELECT COUNT(*) FROM tb_usuario"));
+        assertEquals(0, banco.contar("SELECT COUNT(*) FROM tb_email_pendente"));
+    }
+
+    @Test
+    public void loginRepetidoDevolveConexao() throws Exception {
+        CadastroBean primeiro = conversa(criarBean(), 1);
+        primeiro.cadastrarUsuario();
+        CadastroBean segundo = conversa(criarBean(), 1);
+
+        try {
+            segundo.cadastrarUsuario();
+            fail("O login repetido deveria ser recusado");
+        } catch (RuntimeException ex) {
+            assertEquals(0, banco.getConexoesAbertas());
+        }
+    }
+
+    /*
+     * Abre N conversas (criarUsuario e criarEnderecoUsuario) e só depois as
+     * conclui, com THREADS clientes simultâneos. Durante as conversas nenhuma
+     * conexão fica ocupada, e na conclusão o máximo depende apenas dos
+     * clientes simultâneos, não da quantidade de conversas abertas.
+     */
+    @Test
+    public void conexoesNaoCrescemComAsConversasAbertas() throws Exception {
+        ExecutorService clientes = Executors.newFixedThreadPool(THREADS);
+        try {
+            int login = 0;
+            for (int conversas : new int[]{10, 100, 1000}) {
+                List<CadastroBean> beans = new ArrayList<>(conversas);
+                for (int i = 0; i < conversas; i++) {
+                    beans.add(conversa(criarBean(), login++));
+                }
+                int duranteConversas = banco.getConexoesAbertas();
+                banco.zerarMaximo();
+
+                List<Future<?>> cadastros = new ArrayList<>(conversas);
+                for (final CadastroBean bean : beans) {
+                    cadastros.add(clientes.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            bean.cadastrarUsuario();
+                        }
+                    }));
+                }
+                for (Future<?> cadastro : cadastros) {
+                    cadastro.get();
+                }
+
+                System.out.printf("%4d conversas abertas: %d conexões ocupadas durante as conversas, no máximo %d na conclusão%n",
+                        conversas, duranteConversas, banco.getMaximoConexoesAbertas());
+                assertEquals(0, duranteConversas);
+                assertTrue(banco.getMaximoConexoesAbertas() <= THREADS);
+            }
+            assertEquals(1110, banco.contar("SELECT COUNT(*) FROM tb_usuario"));
+        } finally {
+            clientes.shutdownNow();
+        }
+    }
+
+    private CadastroBean criarBean() {
+        return Injecao.injetar(new CadastroBean(), "ds", banco.getDataSource());
+    }
+
+    private static CadastroBean conversa(CadastroBean bean, int numero) {
+        bean.criarUsuario("usuario" + numero, "senha", "usuario" + numero + "@gmail.com");
+        bean.criarEnderecoUsuario("50670-210", "Rua Ribeirão", numero);
+        return bean;
+    }
+}
@@ -0,0 +1,156 @@
+package ejb.stateful;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes da gravação compacta de Usuario e Endereco, feita pelo container na
+ * passivação do CadastroBean, e comparação com a serialização padrão usada
+ * antes.
+ *
+ * @author MASC
+ */
+public class UsuarioTest {
+
+    @Test
+    public void gravaELeTodosOsCampos() throws Exception {
+        Usuario usuario = new Usuario("masc", "senha", "masc@gmail.com");
+        usuario.criarEndereco("50670-210", "Rua Ribeirão", 20);
+
+        Usuario lido = (Usuario) ler(gravar(usuario));
+
+        assertEquals("masc", lido.getLogin());
+        assertEquals("senha", lido.getSenha());
+        assertEquals("masc@gmail.com", lido.getEmail());
+        assertEquals("50670-210", lido.getEndereco().getCep());
+        assertEquals("Rua Ribeirão", lido.getEndereco().getLogradouro());
+        assertEquals(Integer.valueOf(20), lido.getEndereco().getNumero());
+    }
+
+    @Test
+    public void gravaCamposNulos() throws Exception {
+        Usuario semEndereco = (Usuario) ler(gravar(new Usuario("masc", "senha", null)));
+        assertEquals("masc", semEndereco.getLogin());
+        assertNull(semEndereco.getEmail());
+        assertNull(semEndereco.getEndereco());
+
+        //O CadastroBean pode ser passivado antes de criarUsuario().
+        Usuario vazio = new Usuario();
+        vazio.setEndereco(new Endereco(null, null, null));
+        Usuario lido = (Usuario) ler(gravar(vazio));
+        assertNull(lido.getLogin());
+        assertNull(lido.getSenha());
+        assertNull(lido.getEndereco().getCep());
+        assertNull(lido.getEndereco().getLogradouro());
+        assertNull(lido.getEndereco().getNumero());
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void recusaVersaoDesconhecida() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeByte(99);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            new Usuario().readExternal(in);
+        }
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void recusaVersaoDesconhecidaDoEndereco() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeByte(0);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            new Endereco().readExternal(in);
+        }
+    }
+
+    /*
+     * Tamanho de um usuário gravado sozinho, como na passivação de um bean, e
+     * tempo de gravação e leitura, contra as mesmas classes com a
+     * serialização padrão (UsuarioPadrao e EnderecoPadrao). Os tempos são
+     * apenas informativos.
+     */
+    @Test
+    public void comparacaoComSerializacaoPadrao() throws Exception {
+        final int repeticoes = 20000;
+        Usuario compacto = new Usuario("masc", "senha", "masc@gmail.com");
+        compacto.criarEndereco("50670-210", "Rua Ribeirão", 20);
+        UsuarioPadrao padrao = new UsuarioPadrao("masc", "senha", "masc@gmail.com",
+                new EnderecoPadrao("50670-210", "Rua Ribeirão", 20));
+
+        int bytesCompacto = gravar(compacto).length;
+        int bytesPadrao = gravar(padrao).length;
+
+        for (int i = 0; i < repeticoes; i++) {
+            ler(gravar(compacto));
+            ler(gravar(padrao));
+        }
+        long inicio = System.nanoTime();
+        for (int i = 0; i < repeticoes; i++) {
+            ler(gravar(padrao));
+        }
+        long tempoPadrao = System.nanoTime() - inicio;
+        inicio = System.nanoTime();
+        for (int i = 0; i < repeticoes; i++) {
+            ler(gravar(compacto));
+        }
+        long tempoCompacto = System.nanoTime() - inicio;
+
+        System.out.printf("Serialização padrão: %d bytes, %d ns; Externalizable: %d bytes, %d ns%n",
+                bytesPadrao, tempoPadrao / repeticoes, bytesCompacto, tempoCompacto / repeticoes);
+        assertTrue(bytesCompacto < bytesPadrao);
+    }
+
+    private static byte[] gravar(Object objeto) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(objeto);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object ler(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    /*
+     * Usuario e Endereco como eram antes da gravação compacta.
+     */
+    private static class UsuarioPadrao implements Serializable {
+        private final String login;
+        private final String senha;
+        private final String email;
+        private final EnderecoPadrao endereco;
+
+        UsuarioPadrao(String login, String senha, String email, EnderecoPadrao endereco) {
+            this.login = login;
+            this.senha = senha;
+            this.email = email;
+            this.endereco = endereco;
+        }
+    }
+
+    private static class EnderecoPadrao implements Serializable {
+        private final String cep;
+        private final String logradouro;
+        private final Integer numero;
+
+        EnderecoPadrao(String cep, String logradouro, Integer numero) {
+            this.cep = cep;
+            this.logradouro = logradouro;
+            this.numero = numero;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package ejb.stateless;
+
+import ejb.BancoTeste;
+import ejb.Injecao;
+import ejb.stateful.CadastroBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes do CadastroLoteBean sem container, sobre o banco em memória do
+ * BancoTeste, cuja UserTransaction faz o papel da transação do container.
+ *
+ * @author MASC
+ */
+public class CadastroLoteBeanTest {
+    private static final int USUARIOS = 10000;
+
+    private BancoTeste banco;
+
+    @Before
+    public void setUp() throws Exception {
+        banco = new BancoTeste();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        banco.fechar();
+    }
+
+    @Test
+    public void emailOpcionalNoLote() throws Exception {
+        List<ResultadoCadastro> resultados = criarBean(banco).cadastrarUsuarios(Arrays.asList(
+                usuario(1, "usuario1@gmail.com"), usuario(2, null), usuario(3, "usuario3@gmail.com")));
+
+        for (ResultadoCadastro resultado : resultados) {
+            assertTrue(resultado.getLogin(), resultado.isSucesso());
+        }
+        assertEquals(3, banco.contar("SELECT COUNT(*) FROM tb_usuario"));
+        assertEquals(2, banco.contar("SELECT COUNT(*) FROM tb_email_pendente"));
+        assertEquals(0, banco.getConexoesAbertas());
+    }
+
+    /*
+     * Os mesmos dados são aceitos ou recusados, com a mesma mensagem, pelo
+     * cadastro em lote e pelo cadastro interativo.
+     */
+    @Test
+    public void mesmaValidacaoNosDoisCaminhos() throws Exception {
+        UsuarioDTO semEmail = usuario(1, null);
+        UsuarioDTO semSenha = new UsuarioDTO("usuario2", null, "usuario2@gmail.com", "50670-210", "Rua Ribeirão", 2);
+        UsuarioDTO semEndereco = new UsuarioDTO("usuario3", "senha", "usuario3@gmail.com", "50670-210", null, 3);
+
+        List<ResultadoCadastro> resultados = criarBean(banco).cadastrarUsuarios(Arrays.asList(semEmail, semSenha, semEndereco));
+        assertTrue(resultados.get(0).isSucesso());
+        assertEquals(ValidacaoUsuario.ERRO_LOGIN_SENHA, resultados.get(1).getMensagem());
+        assertEquals(ValidacaoUsuario.ERRO_ENDERECO, resultados.get(2).getMensagem());
+
+        BancoTeste outro = new BancoTeste();
+        try {
+            assertNull(cadastrarInterativo(outro, semEmail));
+            assertEquals(ValidacaoUsuario.ERRO_LOGIN_SENHA, cadastrarInterativo(outro, semSenha));
+            assertEquals(ValidacaoUsuario.ERRO_ENDERECO, cadastrarInterativo(outro, semEndereco));
+            assertEquals(1, outro.contar("SELECT COUNT(*) FROM tb_usuario"));
+            assertEquals(0, outro.getConexoesAbertas());
+        } finally {
+            outro.fechar();
+        }
+    }
+
+    /*
+     * Um login repetido faz o lote do bloco falhar; o bloco é gravado de novo
+     * linha a linha e só o usuário repetido fica de fora.
+     */
+    @Test
+    public void loginRepetidoRecusaApenasOUsuario() throws Exception {
+        List<UsuarioDTO> usuarios = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            usuarios.add(usuario(i, "usuario" + i + "@gmail.com"));
+        }
+        usuarios.add(usuario(4, "repetido@gmail.com"));
+
+        List<ResultadoCadastro> resultados = criarBean(banco).cadastrarUsuarios(usuarios);
+
+        assertEquals(11, resultados.size());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(resultados.get(i).isSucesso());
+        }
+        assertFalse(resultados.get(10).isSucesso());
+        assertEquals(10, banco.contar("SELECT COUNT(*) FROM tb_usuario"));
+        assertEquals(0, banco.contar("SELECT COUNT(*) FROM tb_email_pendente WHERE txt_para = ?", "repetido@gmail.com"));
+        assertEquals(0, banco.getConexoesAbertas());
+    }
+
+    /*
+     * Comparação com o caminho stateful para USUARIOS usuários. Sem container
+     * não há custo de rede, então os tempos medem só o banco; as chamadas
+     * remotas que cada caminho faria são contadas à parte: quatro por usuário
+     * no CadastroBean (criação do bean, criarUsuario, criarEnderecoUsuario e
+     * cadastrarUsuario) contra uma para o lote inteiro.
+     */
+    @Test
+    public void comparacaoComCaminhoStateful() throws Exception {
+        List<UsuarioDTO> usuarios = new ArrayList<>(USUARIOS);
+        for (int i = 0; i < USUARIOS; i++) {
+            usuarios.add(usuario(i, "usuario" + i + "@gmail.com"));
+        }
+
+        //Aquecimento dos dois caminhos em bancos descartáveis.
+        for (int rodada = 0; rodada < 2; rodada++) {
+            BancoTeste aquecimento = new BancoTeste();
+            try {
+                cadastrarStateful(aquecimento, usuarios.subList(0, 1000));
+                criarBean(aquecimento).cadastrarUsuarios(usuarios.subList(1000, 2000));
+            } finally {
+                aquecimento.fechar();
+            }
+        }
+
+        BancoTeste stateful = new BancoTeste();
+        try {
+            long inicio = System.nanoTime();
+            cadastrarStateful(stateful, usuarios);
+            long duracaoStateful = System.nanoTime() - inicio;
+
+            inicio = System.nanoTime();
+            List<ResultadoCadastro> resultados = criarBean(banco).cadastrarUsuarios(usuarios);
+            long duracaoLote = System.nanoTime() - inicio;
+
+            System.out.printf("%d usuários, stateful: %5d ms, %5d chamadas remotas%n", USUARIOS,
+                    TimeUnit.NANOSECONDS.toMillis(duracaoStateful), 4 * USUARIOS);
+            System.out.printf("%d usuários, lote:     %5d ms, %5d chamada remota%n", USUARIOS,
+                    TimeUnit.NANOSECONDS.toMillis(duracaoLote), 1);
+
+            for (ResultadoCadastro resultado : resultados) {
+                assertTrue(resultado.getLogin(), resultado.isSucesso());
+            }
+            assertEquals(USUARIOS, stateful.contar("SELECT COUNT(*) FROM tb_usuario"));
+            assertEquals(USUARIOS, banco.contar("SELECT COUNT(*) FROM tb_usuario"));
+            assertEquals(USUARIOS, banco.contar("SELECT COUNT(*) FROM tb_email_pendente"));
+            assertEquals(1, banco.getMaximoConexoesAbertas());
+        } finally {
+            stateful.fechar();
+        }
+    }
+
+    private static CadastroLoteBean criarBean(BancoTeste banco) {
+        CadastroLoteBean bean = Injecao.injetar(new CadastroLoteBean(), "ds", banco.getDataSource());
+        return Injecao.injetar(bean, "transacao", banco.getTransacao());
+    }
+
+    private static void cadastrarStateful(BancoTeste banco, List<UsuarioDTO> usuarios) {
+        for (UsuarioDTO usuario : usuarios) {
+            assertNull(cadastrarInterativo(banco, usuario));
+        }
+    }
+
+    /*
+     * Faz a conversa completa do CadastroBean. Devolve null se o usuário foi
+     * cadastrado ou a mensagem da recusa.
+     */
+    private static String cadastrarInterativo(BancoTeste banco, UsuarioDTO usuario) {
+        CadastroBean bean = Injecao.injetar(new CadastroBean(), "ds", banco.getDataSource());
+        bean.criarUsuario(usuario.getLogin(), usuario.getSenha(), usuario.getEmail());
+        bean.criarEnderecoUsuario(usuario.getCep(), usuario.getLogradouro(), usuario.getNumero());
+        try {
+            bean.cadastrarUsuario();
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return ex.getMessage();
+        }
+    }
+
+    private static UsuarioDTO usuario(int numero, String email) {
+        return new UsuarioDTO("usuario" + numero, "senha", email, "50670-210", "Rua Ribeirão", numero);
+    }
+}
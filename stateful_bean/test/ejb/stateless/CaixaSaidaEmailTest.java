@@ -0,0 +1,120 @@
+package ejb.stateless;
+
+import ejb.BancoTeste;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes da caixa de saída de e-mails sobre o banco em memória do
+ * BancoTeste.
+ *
+ * @author MASC
+ */
+public class CaixaSaidaEmailTest {
+    private static final long PRAZO = 5 * 60 * 1000L;
+
+    private final CaixaSaidaEmail caixaSaida = new CaixaSaidaEmail();
+    private BancoTeste banco;
+    private Connection conexao;
+
+    @Before
+    public void setUp() throws Exception {
+        banco = new BancoTeste();
+        conexao = banco.getDataSource().getConnection();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conexao.close();
+        banco.fechar();
+    }
+
+    @Test
+    public void reservaMarcaComoEnviandoAteOPrazo() throws Exception {
+        caixaSaida.registrar(conexao, "a@teste.com");
+
+        List<CaixaSaidaEmail.Pendente> reservados = caixaSaida.reservarPendentes(conexao, 10, PRAZO);
+
+        assertEquals(1, reservados.size());
+        assertEquals("a@teste.com", reservados.get(0).getPara());
+        assertEquals(0, reservados.get(0).getTentativas());
+        assertEquals(1, banco.contar("SELECT COUNT(*) FROM tb_email_pendente WHERE txt_situacao = 'ENVIANDO'"));
+        assertTrue(segundosAteProximaTentativa(reservados.get(0)) > 4 * 60);
+    }
+
+    @Test
+    public void reservadoSoVoltaQuandoOPrazoVence() throws Exception {
+        caixaSaida.registrar(conexao, "a@teste.com");
+        caixaSaida.reservarPendentes(conexao, 10, PRAZO);
+        assertTrue(caixaSaida.reservarPendentes(conexao, 10, PRAZO).isEmpty());
+
+        //Simula a queda do servidor durante o envio: a reserva vence sem confirmação.
+        banco.executar("UPDATE tb_email_pendente SET dt_proxima_tentativa = DATEADD('SECOND', -1, CURRENT_TIMESTAMP)");
+
+        assertEquals(1, caixaSaida.reservarPendentes(conexao, 10, PRAZO).size());
+    }
+
+    @Test
+    public void reservaRespeitaLimiteEOrdem() throws Exception {
+        caixaSaida.registrarTodos(conexao, Arrays.asList("a@teste.com", "b@teste.com", "c@teste.com"));
+
+        List<CaixaSaidaEmail.Pendente> primeiros = caixaSaida.reservarPendentes(conexao, 2, PRAZO);
+        List<CaixaSaidaEmail.Pendente> restantes = caixaSaida.reservarPendentes(conexao, 2, PRAZO);
+
+        assertEquals(2, primeiros.size());
+        assertEquals("a@teste.com", primeiros.get(0).getPara());
+        assertEquals("b@teste.com", primeiros.get(1).getPara());
+        assertEquals(1, restantes.size());
+        assertEquals("c@teste.com", restantes.get(0).getPara());
+    }
+
+    @Test
+    public void confirmarEnvioRemove() throws Exception {
+        caixaSaida.registrar(conexao, "a@teste.com");
+        CaixaSaidaEmail.Pendente pendente = caixaSaida.reservarPendentes(conexao, 10, PRAZO).get(0);
+
+        caixaSaida.confirmarEnvio(conexao, pendente);
+
+        assertEquals(0, banco.contar("SELECT COUNT(*) FROM tb_email_pendente"));
+    }
+
+    @Test
+    public void falhaAplicaEsperaExponencial() throws Exception {
+        caixaSaida.registrar(conexao, "a@teste.com");
+        CaixaSaidaEmail.Pendente pendente = caixaSaida.reservarPendentes(conexao, 10, PRAZO).get(0);
+
+        caixaSaida.registrarFalha(conexao, pendente);
+        assertEquals(1, banco.contar("SELECT nm_tentativas FROM tb_email_pendente"));
+        assertEquals(1, banco.contar("SELECT COUNT(*) FROM tb_email_pendente WHERE txt_situacao = 'PENDENTE'"));
+        assertEquals(30, segundosAteProximaTentativa(pendente), 2);
+        assertTrue(caixaSaida.reservarPendentes(conexao, 10, PRAZO).isEmpty());
+
+        //A terceira falha espera 30s * 2^2.
+        caixaSaida.registrarFalha(conexao, new CaixaSaidaEmail.Pendente(pendente.getId(), pendente.getPara(), 2));
+        assertEquals(3, banco.contar("SELECT nm_tentativas FROM tb_email_pendente"));
+        assertEquals(120, segundosAteProximaTentativa(pendente), 2);
+    }
+
+    @Test
+    public void esgotadasAsTentativasNaoEnviaMais() throws Exception {
+        caixaSaida.registrar(conexao, "a@teste.com");
+        CaixaSaidaEmail.Pendente pendente = caixaSaida.reservarPendentes(conexao, 10, PRAZO).get(0);
+
+        caixaSaida.registrarFalha(conexao, new CaixaSaidaEmail.Pendente(pendente.getId(), pendente.getPara(),
+                CaixaSaidaEmail.MAXIMO_TENTATIVAS - 1));
+        banco.executar("UPDATE tb_email_pendente SET dt_proxima_tentativa = DATEADD('SECOND', -1, CURRENT_TIMESTAMP)");
+
+        assertEquals(1, banco.contar("SELECT COUNT(*) FROM tb_email_pendente WHERE txt_situacao = 'FALHA'"));
+        assertTrue(caixaSaida.reservarPendentes(conexao, 10, PRAZO).isEmpty());
+    }
+
+    private long segundosAteProximaTentativa(CaixaSaidaEmail.Pendente pendente) throws Exception {
+        return banco.contar("SELECT DATEDIFF('SECOND', CURRENT_TIMESTAMP, dt_proxima_tentativa) FROM tb_email_pendente WHERE id = ?",
+                pendente.getId());
+    }
+}
@@ -0,0 +1,260 @@
+package ejb.stateless;
+
+import ejb.BancoTeste;
+import ejb.Injecao;
+import ejb.ServidorSmtp;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testes do esvaziamento da caixa de saída (ServicoEmail.processarPendentes)
+ * com o ExecutorEmail, o banco em memória do BancoTeste e o ServidorSmtp no
+ * lugar do servidor de e-mail. Os beans são criados e ligados como o
+ * container faria; cada thread do executor usa a sua própria instância de
+ * ServicoEmail, como no pool de beans stateless.
+ *
+ * @author MASC
+ */
+public class ServicoEmailTest {
+    private BancoTeste banco;
+    private ServidorSmtp smtp;
+    private MetricasEmail metricas;
+    private ExecutorEmail executor;
+    private ServicoEmail servico;
+    private final List<ServicoEmail> instancias = Collections.synchronizedList(new ArrayList<ServicoEmail>());
+
+    @Before
+    public void setUp() throws Exception {
+        banco = new BancoTeste();
+        smtp = new ServidorSmtp();
+        metricas = new MetricasEmail();
+        executor = new ExecutorEmail();
+        Injecao.injetar(executor, "fabricaThreads", new ManagedThreadFactory() {
+            @Override
+            public Thread newThread(Runnable tarefa) {
+                Thread thread = new Thread(tarefa, "email-teste");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Injecao.injetar(executor, "ds", banco.getDataSource());
+        Injecao.injetar(executor, "metricas", metricas);
+        Injecao.injetar(executor, "servicoEmail", new PoolServicoEmail(smtp.criarSessao()));
+        executor.inicializar();
+        servico = criarServico(smtp.criarSessao());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.finalizar();
+        for (ServicoEmail instancia : instancias) {
+            instancia.desconectar();
+        }
+        smtp.close();
+        banco.fechar();
+    }
+
+    @Test
+    public void enviaERemoveDaCaixaDeSaida() throws Exception {
+        List<String> destinatarios = registrar(20);
+
+        servico.processarPendentes();
+
+        List<String> entregues = smtp.getEntregues();
+        Collections.sort(entregues);
+        Collections.sort(destinatarios);
+        assertEquals(destinatarios, entregues);
+        assertEquals(0, banco.contar("SELECT COUNT(*) FROM tb_email_pendente"));
+        assertEquals(20, metricas.getMensagensEnviadas());
+        assertEquals(0, banco.getConexoesAbertas());
+    }
+
+    @Test
+    public void destinatarioRecusadoFicaParaNovaTentativa() throws Exception {
+        registrar(3);
+        smtp.recusar("usuario1@teste.com");
+
+        servico.processarPendentes();
+
+        assertEquals(2, smtp.getEntregues().size());
+        assertFalse(smtp.getEntregues().contains("usuario1@teste.com"));
+        assertEquals(1, banco.contar("SELECT COUNT(*) FROM tb_email_pendente WHERE txt_para = ? "
+                + "AND nm_tentativas = 1 AND txt_situacao = 'PENDENTE'", "usuario1@teste.com"));
+        assertEquals(1, banco.contar("SELECT COUNT(*) FROM tb_email_pendente"));
+    }
+
+    @Test
+    public void servidorForaDoArReagendaTodos() throws Exception {
+        registrar(5);
+        smtp.close();
+
+        servico.processarPendentes();
+
+        assertEquals(5, banco.contar("SELECT COUNT(*) FROM tb_email_pendente WHERE nm_tentativas = 1 AND txt_situacao = 'PENDENTE'"));
+
+        //A próxima execução não tenta de novo antes da espera.
+        servico.processarPendentes();
+        assertEquals(5, banco.contar("SELECT COUNT(*) FROM tb_email_pendente WHERE nm_tentativas = 1"));
+    }
+
+    @Test
+    public void emailsReservadosNaoSaoEnviadosDeNovo() throws Exception {
+        registrar(3);
+        try (Connection conexao = banco.getDataSource().getConnection()) {
+            new CaixaSaidaEmail().reservarPendentes(conexao, 1, 5 * 60 * 1000L);
+        }
+
+        servico.processarPendentes();
+
+        assertEquals(Arrays.asList("usuario1@teste.com", "usuario2@teste.com"), ordenar(smtp.getEntregues()));
+        assertEquals(1, banco.contar("SELECT COUNT(*) FROM tb_email_pendente WHERE txt_situacao = 'ENVIANDO'"));
+    }
+
+    /*
+     * Uma recusa do servidor não é repetida: a mesma conexão continua em uso
+     * e o e-mail fica para a caixa de saída.
+     */
+    @Test
+    public void recusaNaoRepeteOEnvio() throws Exception {
+        smtp.recusar("recusado@teste.com");
+
+        assertFalse(servico.enviarAgora("recusado@teste.com"));
+        assertTrue(servico.enviarAgora("aceito@teste.com"));
+
+        assertEquals(Arrays.asList("aceito@teste.com"), smtp.getEntregues());
+        assertEquals(1, smtp.getConexoes());
+        assertEquals(1, metricas.getMensagensEnviadas());
+    }
+
+    /*
+     * A conexão cai depois da verificação (NOOP) e antes da resposta ao
+     * MAIL FROM: o envio é repetido uma vez em uma conexão nova.
+     */
+    @Test
+    public void quedaNoEnvioReabreAConexao() throws Exception {
+        assertTrue(servico.enviarAgora("usuario1@teste.com"));
+        smtp.derrubarNoProximoEnvio();
+
+        assertTrue(servico.enviarAgora("usuario2@teste.com"));
+
+        assertEquals(Arrays.asList("usuario1@teste.com", "usuario2@teste.com"), smtp.getEntregues());
+        assertEquals(2, smtp.getConexoes());
+        assertEquals(2, metricas.getConexoesAbertas());
+    }
+
+    @Test
+    public void conexaoEncerradaPeloServidorEhReaberta() throws Exception {
+        assertTrue(servico.enviarAgora("usuario1@teste.com"));
+        smtp.derrubarConexoes();
+
+        assertTrue(servico.enviarAgora("usuario2@teste.com"));
+
+        assertEquals(2, smtp.getEntregues().size());
+        assertEquals(2, smtp.getConexoes());
+    }
+
+    /*
+     * Comparação com Transport.send(), que abre, usa e fecha uma conexão por
+     * mensagem. O ServidorSmtp responde com LATENCIA ms de espera e gasta
+     * LATENCIA_CONEXAO ms para abrir cada conexão.
+     */
+    @Test
+    public void comparacaoComTransportSend() throws Exception {
+        final int mensagens = 100;
+        smtp.setLatencia(1);
+        smtp.setLatenciaConexao(20);
+        Session sessao = smtp.criarSessao();
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < mensagens; i++) {
+            Message message = new MimeMessage(sessao);
+            message.setFrom(new InternetAddress("discsoftwarecorporativo@gmail.com"));
+            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse("avulso" + i + "@teste.com"));
+            message.setSubject("Cadastro realizado com sucesso");
+            message.setText("Cadastro realizado com sucesso. E-mail automático.");
+            Transport.send(message);
+        }
+        long avulsos = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        int conexoesAvulsos = smtp.getConexoes();
+
+        inicio = System.nanoTime();
+        for (int i = 0; i < mensagens; i++) {
+            assertTrue(servico.enviarAgora("usuario" + i + "@teste.com"));
+        }
+        long reaproveitados = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        int conexoesReaproveitadas = smtp.getConexoes() - conexoesAvulsos;
+
+        System.out.printf("Transport.send:       %d mensagens em %5d ms (%6.1f msg/s), %3d conexões%n",
+                mensagens, avulsos, mensagens * 1000.0 / avulsos, conexoesAvulsos);
+        System.out.printf("conexão reaproveitada: %d mensagens em %5d ms (%6.1f msg/s), %3d conexões, reuso %.2f%n",
+                mensagens, reaproveitados, mensagens * 1000.0 / reaproveitados, conexoesReaproveitadas,
+                metricas.getTaxaReusoConexao());
+        assertEquals(2 * mensagens, smtp.getEntregues().size());
+        assertEquals(mensagens, conexoesAvulsos);
+        assertEquals(1, conexoesReaproveitadas);
+        assertTrue(reaproveitados < avulsos);
+    }
+
+    private List<String> registrar(int quantidade) throws Exception {
+        List<String> destinatarios = new ArrayList<>();
+        for (int i = 0; i < quantidade; i++) {
+            destinatarios.add("usuario" + i + "@teste.com");
+        }
+        try (Connection conexao = banco.getDataSource().getConnection()) {
+            new CaixaSaidaEmail().registrarTodos(conexao, destinatarios);
+        }
+        return destinatarios;
+    }
+
+    private static List<String> ordenar(List<String> lista) {
+        List<String> ordenada = new ArrayList<>(lista);
+        Collections.sort(ordenada);
+        return ordenada;
+    }
+
+    private ServicoEmail criarServico(Session sessao) {
+        ServicoEmail instancia = new ServicoEmail();
+        Injecao.injetar(instancia, "sessao", sessao);
+        Injecao.injetar(instancia, "ds", banco.getDataSource());
+        Injecao.injetar(instancia, "metricas", metricas);
+        Injecao.injetar(instancia, "executor", executor);
+        instancias.add(instancia);
+        return instancia;
+    }
+
+    /*
+     * Faz o papel do proxy do container para ServicoEmailLocal: cada thread
+     * recebe a sua instância do bean.
+     */
+    private class PoolServicoEmail implements ServicoEmailLocal {
+        private final ThreadLocal<ServicoEmail> instancia;
+
+        PoolServicoEmail(final Session sessao) {
+            instancia = new ThreadLocal<ServicoEmail>() {
+                @Override
+                protected ServicoEmail initialValue() {
+                    return criarServico(sessao);
+                }
+            };
+        }
+
+        @Override
+        public boolean enviarAgora(String para) {
+            return instancia.get().enviarAgora(para);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ejb.stateless;
+
+import java.util.List;
+import javax.ejb.Remote;
+
+@Remote
+public interface CadastroLoteBeanRemote {
+    /**
+     * Cadastra vários usuários em uma única chamada remota.
+     *
+     * @return um resultado por usuário, na mesma ordem da lista recebida.
+     */
+    public List<ResultadoCadastro> cadastrarUsuarios(List<UsuarioDTO> usuarios);
+}
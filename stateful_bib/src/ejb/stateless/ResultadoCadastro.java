@@ -0,0 +1,38 @@
+package ejb.stateless;
+
+import java.io.Serializable;
+
+/**
+ * Resultado do cadastro de um dos usuários enviados em lote, na mesma
+ * posição em que o usuário aparecia na lista.
+ *
+ * @author MASC
+ */
+public class ResultadoCadastro implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String login;
+    private final boolean sucesso;
+    private final String mensagem;
+
+    public ResultadoCadastro(String login, boolean sucesso, String mensagem) {
+        this.login = login;
+        this.sucesso = sucesso;
+        this.mensagem = mensagem;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public boolean isSucesso() {
+        return sucesso;
+    }
+
+    /**
+     * @return motivo da falha, ou null se o usuário foi cadastrado.
+     */
+    public String getMensagem() {
+        return mensagem;
+    }
+}
@@ -0,0 +1,80 @@
+package ejb.stateless;
+
+import java.io.Serializable;
+
+/**
+ * Dados de um usuário a cadastrar em lote (CadastroLoteBeanRemote).
+ *
+ * @author MASC
+ */
+public class UsuarioDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String login;
+    private String senha;
+    private String email;
+    private String cep;
+    private String logradouro;
+    private Integer numero;
+
+    public UsuarioDTO() {
+
+    }
+
+    public UsuarioDTO(String login, String senha, String email, String cep, String logradouro, Integer numero) {
+        this.login = login;
+        this.senha = senha;
+        this.email = email;
+        this.cep = cep;
+        this.logradouro = logradouro;
+        this.numero = numero;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public String getSenha() {
+        return senha;
+    }
+
+    public void setSenha(String senha) {
+        this.senha = senha;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getCep() {
+        return cep;
+    }
+
+    public void setCep(String cep) {
+        this.cep = cep;
+    }
+
+    public String getLogradouro() {
+        return logradouro;
+    }
+
+    public void setLogradouro(String logradouro) {
+        this.logradouro = logradouro;
+    }
+
+    public Integer getNumero() {
+        return numero;
+    }
+
+    public void setNumero(Integer numero) {
+        this.numero = numero;
+    }
+}